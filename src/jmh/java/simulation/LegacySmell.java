@@ -0,0 +1,133 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The smell search as it was before {@link SmellSearch}: one FringeHex object per visited hex,
+ * a list per fringe and a linear scan of the visited list. Kept as the baseline of
+ * {@link SmellBenchmark} and to check that both searches agree.
+ */
+final class LegacySmell {
+
+    private LegacySmell() {
+    }
+
+    private static class FringeHex {
+        Hex.HexType type;
+        int index;
+        boolean visited;
+        int turns;
+
+        int direction;
+
+        int initialTurnDirection;
+
+        FringeHex(Hex.HexType _type, int _index) {
+            type = _type;
+            index = _index;
+            turns = 0;
+            visited = false;
+            direction = 0;
+            initialTurnDirection = 0;
+        }
+    }
+
+    static int smell(World world, int start, int critterDirection, int distance) {
+        int cost = 1_000_000;
+
+        List<ArrayList<FringeHex>> fringes = new ArrayList<>();
+        List<FringeHex> visitedList = new ArrayList<>();
+        //add this critter's hex to fringe[0]
+        ArrayList<FringeHex> fringe = new ArrayList<>();
+        FringeHex fhx = new FringeHex(world.typeAt(start), start);
+        fringe.add(fhx);
+        fhx.visited = true;
+        fhx.direction = critterDirection;
+        //add this FringeHex to the visited list
+        visitedList.add(fhx);
+        fringes.add(fringe);
+        int foodFringeIndex = -1;
+        for (int i = 1; (i < distance && (foodFringeIndex == -1)); i++) {
+            //create the next fringe
+            ArrayList<FringeHex> nextFringe = new ArrayList<FringeHex>();
+            fringes.add(nextFringe);
+            //for each Hex in the previous fringe (i-1)
+            int previousFringeIndex = i - 1;
+            ArrayList<FringeHex> previousFringe = fringes.get(previousFringeIndex);
+            for (FringeHex cFhx : previousFringe) {
+                for (int dir = 0; dir < 6; dir++) {
+                    int neighborIndex = world.neighbor(cFhx.index, dir);
+                    if (neighborIndex < 0) continue;
+
+                    FringeHex nFhx = new FringeHex(world.typeAt(neighborIndex), neighborIndex);
+                    if (((nFhx.type == Hex.HexType.EMPTY) || (nFhx.type == Hex.HexType.FOOD)) && (containsFringeHex(visitedList, nFhx) == null)) {
+                        visitedList.add(nFhx);
+                        nFhx.visited = true;
+                        nFhx.turns = cFhx.turns;
+                        nFhx.initialTurnDirection = cFhx.initialTurnDirection;
+                        if (cFhx.direction != dir) {
+                            if (previousFringeIndex == 0) {
+                                nFhx.initialTurnDirection = SmellSearch.initialTurnDirection(cFhx.direction, dir);
+                            }
+                            nFhx.turns += SmellSearch.turns(cFhx.direction, dir);
+                        }
+                        nFhx.direction = dir;
+                        nextFringe.add(nFhx);
+                        if (nFhx.type == Hex.HexType.FOOD) {
+                            foodFringeIndex = i;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (foodFringeIndex != -1) {
+            ArrayList<FringeHex> foodFringe = fringes.get(foodFringeIndex);
+            for (FringeHex foodFhx : foodFringe) {
+                if (foodFhx.type == Hex.HexType.FOOD) {
+                    for (int dir = 0; dir < 6; dir++) {
+                        int neighborIndex = world.neighbor(foodFhx.index, dir);
+                        if (neighborIndex < 0) continue;
+
+                        FringeHex nFhx = new FringeHex(world.typeAt(neighborIndex), neighborIndex);
+
+                        if ((nFhx = containsFringeHex(fringes.get(foodFringeIndex - 1), nFhx)) != null) {
+                            int foodDist = foodFringeIndex - 1 + nFhx.turns;
+                            int foodCost = foodDist * 100;
+
+                            int foodDirection = getDirection(world, nFhx, foodFhx);
+                            if (foodDirection != nFhx.direction) {
+                                foodDist += 1;
+                                foodCost = foodDist * 100;
+                            }
+                            foodCost += nFhx.initialTurnDirection;
+
+                            if (foodCost < cost) cost = foodCost;
+                        }
+                    }
+                }
+            }
+        }
+        return cost;
+    }
+
+    private static int getDirection(World world, FringeHex from, FringeHex to) {
+        int direction = 0;
+        for (int dir = 0; dir < 6; dir++) {
+            if (world.neighbor(from.index, dir) == to.index) {
+                direction = dir;
+                break;
+            }
+        }
+        return direction;
+    }
+
+    private static FringeHex containsFringeHex(List<FringeHex> list, FringeHex fhx) {
+        if ((list == null) || (list.isEmpty())) return null;
+
+        for (FringeHex hex : list)
+            if (hex.index == fhx.index) return hex;
+        return null;
+    }
+}
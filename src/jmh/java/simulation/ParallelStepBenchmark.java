@@ -0,0 +1,62 @@
+package simulation;
+
+import ast.ProgramImpl;
+import exceptions.SyntaxError;
+import model.StepMode;
+import org.openjdk.jmh.annotations.*;
+import parse.ParserFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static model.Constants.MIN_MEMORY;
+
+/**
+ * Measures how stepping a large, crowded world scales with the number of threads in each
+ * step mode. The serial mode ignores the number of threads. Every iteration starts from the
+ * same world.
+ * <p>
+ * Run with {@code gradle jmh -PjmhArgs=ParallelStepBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelStepBenchmark {
+
+    private static final int SIZE = 400, CRITTERS = 4_000;
+    private static final String PROGRAM = "ahead[1] < -1 --> eat; ahead[1] > 0 --> attack;"
+            + " smell / 1000 > 0 and smell mod 1000 = 0 --> forward; smell mod 1000 = 1 --> right;"
+            + " smell mod 1000 > 1 --> left; random[30] = 0 --> bud; random[3] = 0 --> right; 1 = 1 --> forward;";
+
+    @Param({"SERIAL", "TILED", "INTENTS"})
+    public StepMode mode;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private World world;
+
+    @Setup(Level.Iteration)
+    public void setup() throws SyntaxError {
+        world = new World("benchmark", SIZE, SIZE, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), 42);
+        world.setStepMode(mode, threads);
+        ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(PROGRAM));
+        for (int i = 0; i < CRITTERS; i++)
+            world.insertCritter(new Critter(world, "benchmark", MIN_MEMORY, 1, 1, 3, 1_000, 0, (ProgramImpl) program.clone()));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        world.setStepMode(StepMode.SERIAL, 0);
+    }
+
+    @Benchmark
+    public int step() {
+        world.step(1);
+        return world.getNumberOfAliveCritters();
+    }
+}
@@ -0,0 +1,73 @@
+package simulation;
+
+import ast.ProgramImpl;
+import exceptions.SyntaxError;
+import org.openjdk.jmh.annotations.*;
+import parse.ParserFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares running critter programs with the tree-walking {@link Interpreter}, compiled
+ * to bytecode, and translated to JVM classes. The critters only think: most rules never
+ * fire, the rest update memory, and every turn ends with wait, so the world barely changes
+ * between invocations.
+ * <p>
+ * Run with {@code gradle jmh -PjmhArgs=ProgramBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgramBenchmark {
+
+    private static final int SIZE = 100, CRITTERS = 1_000;
+    private static final String PROGRAM = "mem[7] mod 5 = 3 and ahead[1] > 0 --> attack;"
+            + " mem[8] > 100 or nearby[mem[7] mod 6] < -1 --> mem[8] := 0 eat;"
+            + " { mem[7] * 3 + mem[8] / 2 > 1000 and POSTURE = 17 } or mem[9] - 4 = mem[10] --> bud;"
+            + " ahead[2] = 0 and mem[7] mod 7 = 1 --> mem[8] := mem[8] + 1 mem[9] := mem[7] / 3;"
+            + " ENERGY > 100000000 --> grow;"
+            + " 1 = 1 --> mem[7] := mem[7] + 1 mem[10] := mem[9] * 2 wait;";
+
+    private World interpreted, compiled, translated;
+
+    @Setup(Level.Iteration)
+    public void setup() throws SyntaxError {
+        interpreted = createWorld(false, false);
+        compiled = createWorld(true, false);
+        translated = createWorld(true, true);
+    }
+
+    private static World createWorld(boolean compiledPrograms, boolean jit) throws SyntaxError {
+        World world = new World("benchmark", SIZE, SIZE, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), 42);
+        world.setEnableManna(false);
+        world.setEnableCompiledPrograms(compiledPrograms);
+        world.setEnableJit(jit);
+        ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(PROGRAM));
+        for (int i = 0; i < CRITTERS; i++)
+            world.insertCritter(new Critter(world, "benchmark", 12, 1, 1, 1, 1_000_000, 0, (ProgramImpl) program.clone()));
+        return world;
+    }
+
+    @Benchmark
+    public int interpreted() {
+        interpreted.step(1);
+        return interpreted.getNumberOfAliveCritters();
+    }
+
+    @Benchmark
+    public int compiled() {
+        compiled.step(1);
+        return compiled.getNumberOfAliveCritters();
+    }
+
+    @Benchmark
+    public int translated() {
+        translated.step(1);
+        return translated.getNumberOfAliveCritters();
+    }
+}
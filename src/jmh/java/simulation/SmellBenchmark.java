@@ -0,0 +1,85 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static model.Constants.MAX_SMELL_DISTANCE;
+
+/**
+ * Compares the smell searches on a world with 10% rock and the given density of food. Every
+ * invocation smells once from each of a fixed set of empty hexes.
+ * <p>
+ * Run with {@code gradle jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmellBenchmark {
+
+    private static final int SIZE = 200, STARTS = 1_000;
+
+    @Param({"0.002", "0.02", "0.1"})
+    public double foodDensity;
+
+    private World world;
+    private SmellSearch search;
+    private SmellField field;
+    private int[] starts;
+
+    @Setup
+    public void setup() {
+        world = new World("benchmark", SIZE, SIZE, new ArrayList<>(), new ArrayList<>());
+        Random random = new Random(42);
+        for (int column = 1; column < world.getWidth() - 1; column++) {
+            for (int row = 2; row < world.getHeight() - 3; row++) {
+                if ((column + row) % 2 != 0) continue;
+                double roll = random.nextDouble();
+                if (roll < 0.1) world.setHex(new Coordinate(column, row), new Hex(column, row, Hex.HexType.ROCK));
+                else if (roll < 0.1 + foodDensity)
+                    world.setHex(new Coordinate(column, row), new Hex(column, row, Hex.HexType.FOOD, 100));
+            }
+        }
+
+        starts = new int[STARTS];
+        for (int i = 0; i < STARTS; ) {
+            int index = world.indexOf(random.nextInt(world.getWidth()), random.nextInt(world.getHeight()));
+            if (world.typeAt(index) == Hex.HexType.EMPTY) starts[i++] = index;
+        }
+        search = world.getSmellSearch();
+        field = world.getSmellField();
+
+        for (int i = 0; i < STARTS; i++) {
+            int expected = LegacySmell.smell(world, starts[i], i % 6, MAX_SMELL_DISTANCE);
+            if (search.smell(starts[i], i % 6, MAX_SMELL_DISTANCE, null) != expected
+                    || search.smell(starts[i], i % 6, MAX_SMELL_DISTANCE, field) != expected)
+                throw new IllegalStateException("smell searches disagree at hex " + starts[i]);
+        }
+    }
+
+    @Benchmark
+    public int legacy() {
+        int sum = 0;
+        for (int i = 0; i < STARTS; i++) sum += LegacySmell.smell(world, starts[i], i % 6, MAX_SMELL_DISTANCE);
+        return sum;
+    }
+
+    @Benchmark
+    public int search() {
+        int sum = 0;
+        for (int i = 0; i < STARTS; i++) sum += search.smell(starts[i], i % 6, MAX_SMELL_DISTANCE, null);
+        return sum;
+    }
+
+    @Benchmark
+    public int searchWithField() {
+        int sum = 0;
+        for (int i = 0; i < STARTS; i++) sum += search.smell(starts[i], i % 6, MAX_SMELL_DISTANCE, field);
+        return sum;
+    }
+}
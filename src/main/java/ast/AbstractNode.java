@@ -3,15 +3,23 @@ package ast;
 import cms.util.maybe.Maybe;
 import mutations.fault.Fault;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
-public abstract class AbstractNode implements Node {
+public abstract class AbstractNode implements Node, Cloneable {
 
-    private final List<Node> children = new ArrayList<>();
+    private List<Node> children = new Children();
     protected Node parent = null;
+    /*
+     * The nodes of the tree rooted at this node in breadth-first order, as nodeAt numbers
+     * them, or null until they are needed. Any change to the children of a node in the tree
+     * forgets it, see Children.
+     */
+    private volatile Node[] order;
+    // the structural hash of the tree rooted at this node, or 0 until it is needed; like the
+    // order, forgotten by any change to the tree, see changed()
+    private volatile int hash;
 
     /**
      * Finds the first matching node of NodeCategory type
@@ -64,7 +72,6 @@ public abstract class AbstractNode implements Node {
      */
     public void addChild(Node child) {
         this.children.add(child);
-        ((AbstractNode) child).parent = this;
     }
 
     /**
@@ -83,35 +90,101 @@ public abstract class AbstractNode implements Node {
 
     @Override
     public int size() {
-        int childCount = 0;
-        // perform a BFT
-        Queue<Node> nodes = new LinkedList<>();
-        nodes.add(this);
-        while (!nodes.isEmpty()) {
-            Node current = nodes.remove();
-
-            childCount++;
-            List<Node> children = current.getChildren();
-            if (children != null) nodes.addAll(children);
-        }
-        return childCount;
+        return order().length;
     }
 
     @Override
     public Node nodeAt(int index) {
-        // do a BFT and create a list of all children rooted at this node
-        List<Node> childSubtree = new LinkedList<>();
-        Queue<Node> nodesToProcess = new LinkedList<>();
-        nodesToProcess.add(this);
-
-        while (!nodesToProcess.isEmpty()) {
-            // process the node at the front of the queue
-            Node current = nodesToProcess.remove();
-            childSubtree.add(current);
-            List<Node> children = current.getChildren();
-            if (children != null) nodesToProcess.addAll(children);
+        // the node itself and its children come first, and are asked for the most
+        if (index == 0) return this;
+        if (index > 0 && index <= children.size()) return children.get(index - 1);
+        return order()[index];
+    }
+
+    // the tree rooted at this node in breadth-first order, worked out if it is not known
+    private Node[] order() {
+        Node[] nodes = order;
+        if (nodes != null) return nodes;
+        List<Node> tree = new ArrayList<>();
+        tree.add(this);
+        for (int i = 0; i < tree.size(); i++) {
+            List<Node> children = tree.get(i).getChildren();
+            if (children != null) tree.addAll(children);
+        }
+        nodes = tree.toArray(new Node[0]);
+        order = nodes;
+        return nodes;
+    }
+
+    // forgets the order of every tree this node is in, as its children have changed
+    private void childrenChanged() {
+        for (Node node = this; node instanceof AbstractNode ancestor; node = ancestor.parent) {
+            ancestor.order = null;
+            ancestor.hash = 0;
         }
-        return childSubtree.get(index);
+    }
+
+    /**
+     * Forgets the structural hash of every tree this node is in, as something the hash
+     * covers has changed; the setters of nodes call this
+     */
+    void changed() {
+        for (Node node = this; node instanceof AbstractNode ancestor; node = ancestor.parent) ancestor.hash = 0;
+    }
+
+    /**
+     * Copies the tree rooted at this node as far as it takes to change the node at index,
+     * numbered as by {@link #nodeAt}: that node is deep-copied, the nodes on the way down to
+     * it are copied one by one, and every other subtree is shared with this tree rather than
+     * copied. The shared nodes keep their parents in this tree.
+     *
+     * @return the copy, in which the node at index is its own and so are all of its ancestors
+     */
+    public Node copyPathTo(int index) {
+        Node[] tree = order();
+        // where the parent of each node up to index is, as order() puts the children of a node together
+        int[] parents = new int[index + 1];
+        for (int i = 0, next = 1; next <= index; i++)
+            for (int c = 0; c < tree[i].getChildren().size() && next <= index; c++) parents[next++] = i;
+
+        Node copy = tree[index].clone();
+        for (int i = index; i > 0; i = parents[i]) copy = ((AbstractNode) tree[parents[i]]).copyReplacing(tree[i], copy);
+        return copy;
+    }
+
+    // this node with the same fields and children, except copy in place of child
+    private AbstractNode copyReplacing(Node child, Node copy) {
+        AbstractNode node;
+        try {
+            node = (AbstractNode) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+        node.children = node.new Children(((Children) children).nodes);
+        node.parent = null;
+        node.order = null;
+        node.hash = 0;
+        node.replace(child, copy);
+        return node;
+    }
+
+    /**
+     * Puts copy in place of child wherever this node, which has just been copied from another
+     * one with the same fields, keeps it, and makes sure that the node shares nothing it could
+     * change with the one it was copied from. Nodes that keep children outside of the list of
+     * children extend this.
+     */
+    void replace(Node child, Node copy) {
+        for (int i = 0; i < children.size(); i++) if (children.get(i) == child) children.set(i, copy);
+    }
+
+    /**
+     * Adds child without making this node its parent, as the child is shared with another tree
+     * and keeps its parent there
+     */
+    void share(Node child) {
+        ((Children) children).nodes.add(child);
+        childrenChanged();
     }
 
     @Override
@@ -120,11 +193,91 @@ public abstract class AbstractNode implements Node {
         return sb;
     }
 
+    /**
+     * @return whether the tree rooted at other is the same as the one rooted at this node:
+     * the same kinds of nodes, with the same operators, values and signs, put together the
+     * same way. Subtrees the trees share are not compared, and trees with different hashes
+     * are told apart at once.
+     */
+    public boolean sameStructure(Node other) {
+        return other instanceof AbstractNode && Structure.same(this, other);
+    }
+
+    /**
+     * @return a hash of the tree rooted at this node, the same for trees that are the same,
+     * see {@link #sameStructure}. Each node keeps its hash until its tree changes, so
+     * working it out again only visits the nodes that changed and the nodes above them.
+     */
+    public int structuralHash() {
+        int h = hash;
+        if (h != 0) return h;
+        h = Structure.hash(this);
+        if (h == 0) h = 1; // 0 stands for not worked out
+        hash = h;
+        return h;
+    }
+
     @Override
     public List<Node> getChildren() {
         return this.children;
     }
 
+    /**
+     * The children of a node. Whatever changes them, including the mutations that edit the
+     * list directly, makes the node the parent of the children it adds and forgets the
+     * order of the trees the node is in.
+     */
+    private final class Children extends AbstractList<Node> {
+
+        private final List<Node> nodes;
+
+        Children() {
+            nodes = new ArrayList<>();
+        }
+
+        // the same children as nodes, still with their own parents
+        Children(List<Node> nodes) {
+            this.nodes = new ArrayList<>(nodes);
+        }
+
+        @Override
+        public Node get(int index) {
+            return nodes.get(index);
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public Node set(int index, Node child) {
+            Node previous = nodes.set(index, child);
+            adopt(child);
+            return previous;
+        }
+
+        @Override
+        public void add(int index, Node child) {
+            nodes.add(index, child);
+            modCount++;
+            adopt(child);
+        }
+
+        @Override
+        public Node remove(int index) {
+            Node removed = nodes.remove(index);
+            modCount++;
+            childrenChanged();
+            return removed;
+        }
+
+        private void adopt(Node child) {
+            if (child instanceof AbstractNode node) node.parent = AbstractNode.this;
+            childrenChanged();
+        }
+    }
+
     /**
      * @return a deep-copy of the Abstract Node
      */
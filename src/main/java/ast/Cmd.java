@@ -33,6 +33,7 @@ public class Cmd extends AbstractNode {
      */
     public void setType(CmdType type) {
         this.type = type;
+        changed();
     }
 
     /**
@@ -33,6 +33,7 @@ public class CmdServe extends Cmd {
      */
     public void setIndex(Expr index) {
         this.index = index;
+        changed();
     }
 
     @Override
@@ -50,6 +51,12 @@ public class CmdServe extends Cmd {
         return "serve[" + index + "]";
     }
 
+    @Override
+    void replace(Node child, Node copy) {
+        super.replace(child, copy);
+        if (index == child) index = (Expr) copy;
+    }
+
     @Override
     public Node clone() {
         return new CmdServe((Expr) this.index.clone());
@@ -43,6 +43,7 @@ public class CmdUpdate extends Cmd {
      */
     public void setMemIndex(Expr memIndex) {
         this.memIndex = memIndex;
+        changed();
     }
 
     /**
@@ -50,6 +51,7 @@ public class CmdUpdate extends Cmd {
      */
     public void setValue(Expr value) {
         this.value = value;
+        changed();
     }
 
     @Override
@@ -67,6 +69,13 @@ public class CmdUpdate extends Cmd {
         return "mem[" + memIndex + "] := " + value;
     }
 
+    @Override
+    void replace(Node child, Node copy) {
+        super.replace(child, copy);
+        if (memIndex == child) memIndex = (Expr) copy;
+        if (value == child) value = (Expr) copy;
+    }
+
     @Override
     public Node clone() {
         return new CmdUpdate((Expr) this.memIndex.clone(), (Expr) this.value.clone());
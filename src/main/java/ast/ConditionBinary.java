@@ -73,6 +73,7 @@ public class ConditionBinary extends Condition {
 	 */
 	public void setLeft(Condition left) {
 		this.left = left;
+		changed();
 	}
 
 	/**
@@ -82,6 +83,7 @@ public class ConditionBinary extends Condition {
 	 */
 	public void setRight(Condition right) {
 		this.right = right;
+		changed();
 	}
 
 	/**
@@ -91,6 +93,7 @@ public class ConditionBinary extends Condition {
 	 */
 	public void setOpr(BinCondOperator opr) {
 		this.opr = opr;
+		changed();
 	}
 
 	/**
@@ -108,6 +111,13 @@ public class ConditionBinary extends Condition {
 		return format(left) + " " + opr.toString().toLowerCase() + " " + format(right);
 	}
 
+	@Override
+	void replace(Node child, Node copy) {
+	    super.replace(child, copy);
+	    if (left == child) left = (Condition) copy;
+	    if (right == child) right = (Condition) copy;
+	}
+
 	@Override
 	public NodeCategory getCategory() {
 		return NodeCategory.BINARY_CONDITION;
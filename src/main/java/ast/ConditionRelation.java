@@ -53,6 +53,7 @@ public class ConditionRelation extends Condition {
      */
     public void setLeft(Expr left) {
         this.left = left;
+        changed();
     }
 
     /**
@@ -61,6 +62,7 @@ public class ConditionRelation extends Condition {
      */
     public void setRight(Expr right) {
         this.right = right;
+        changed();
     }
 
     /**
@@ -69,6 +71,7 @@ public class ConditionRelation extends Condition {
      */
     public void setOpr(RelOperator opr) {
         this.opr = opr;
+        changed();
     }
 
     /** An enum of all possible relational operators */
@@ -94,6 +97,13 @@ public class ConditionRelation extends Condition {
         return left.classInv() && right.classInv() && opr != null;
     }
 
+    @Override
+    void replace(Node child, Node copy) {
+        super.replace(child, copy);
+        if (left == child) left = (Expr) copy;
+        if (right == child) right = (Expr) copy;
+    }
+
     @Override
     public Node clone() {
         return new ConditionRelation((Expr) left.clone(), this.opr, (Expr) right.clone());
@@ -19,6 +19,7 @@ public abstract class Expr extends AbstractNode {
      */
     public void setNegative(boolean isNegative) {
         this.isNegative = isNegative;
+        changed();
     }
 
     /**
@@ -28,6 +29,7 @@ public abstract class Expr extends AbstractNode {
      */
     public void setParentheses(boolean hasParentheses) {
         this.hasParentheses = hasParentheses;
+        changed();
     }
 
     @Override
@@ -40,6 +42,19 @@ public abstract class Expr extends AbstractNode {
         return isNegative ? "-" : "";
     }
 
+    boolean isNegative() {
+        return this.isNegative;
+    }
+
+    /**
+     * @return clone, given the sign and parentheses of this expression
+     */
+    protected Expr keepFlags(Expr clone) {
+        clone.isNegative = this.isNegative;
+        clone.hasParentheses = this.hasParentheses;
+        return clone;
+    }
+
     //only for BinaryExpr, so not public
     protected boolean hasParentheses() {
         return this.hasParentheses;
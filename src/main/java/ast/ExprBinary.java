@@ -63,6 +63,7 @@ public class ExprBinary extends Expr {
      */
     public void setLeft(Expr left) {
         this.left = left;
+        changed();
     }
 
     /**
@@ -72,6 +73,7 @@ public class ExprBinary extends Expr {
      */
     public void setRight(Expr right) {
         this.right = right;
+        changed();
     }
 
     /**
@@ -81,6 +83,7 @@ public class ExprBinary extends Expr {
      */
     public void setOpr(BinExprOperator opr) {
         this.opr = opr;
+        changed();
     }
 
     /**
@@ -114,7 +117,14 @@ public class ExprBinary extends Expr {
 
     @Override
     public Node clone() {
-        return new ExprBinary((Expr) left.clone(), this.opr, (Expr) right.clone());
+        return keepFlags(new ExprBinary((Expr) left.clone(), this.opr, (Expr) right.clone()));
+    }
+
+    @Override
+    void replace(Node child, Node copy) {
+        super.replace(child, copy);
+        if (left == child) left = (Expr) copy;
+        if (right == child) right = (Expr) copy;
     }
 
     @Override
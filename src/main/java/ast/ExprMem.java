@@ -31,6 +31,7 @@ public class ExprMem extends Expr {
      */
     public void setIndex(Expr index) {
         this.index = index;
+        changed();
     }
 
     @Override
@@ -50,6 +51,6 @@ public class ExprMem extends Expr {
 
     @Override
     public Node clone() {
-        return new ExprMem((Expr) this.index.clone());
+        return keepFlags(new ExprMem((Expr) this.index.clone()));
     }
 }
\ No newline at end of file
@@ -40,6 +40,6 @@ public class ExprNum extends Expr {
 
     @Override
     public Node clone() {
-        return new ExprNum(this.getVal());
+        return keepFlags(new ExprNum(this.getVal()));
     }
 }
\ No newline at end of file
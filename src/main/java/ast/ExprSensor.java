@@ -20,7 +20,7 @@ import java.util.concurrent.atomic.AtomicReference;
 public class ExprSensor extends Expr {
 
 	private SensorType sensorType;
-	private Maybe<Expr> index;
+	private Maybe<Expr> index = Maybe.none();
 
 	/**
 	 * Create a sensor of a given type
@@ -45,6 +45,7 @@ public class ExprSensor extends Expr {
 	 */
 	public void setType(SensorType type) {
 		this.sensorType = type;
+		changed();
 	}
 
 	/**
@@ -71,6 +72,7 @@ public class ExprSensor extends Expr {
 	 */
 	public void setIndex(Expr index) {
 		this.index = Maybe.from(index);
+		changed();
 	}
 
 	/**
@@ -107,7 +109,7 @@ public class ExprSensor extends Expr {
 		this.index.thenDo(ec::set);
 
 		ExprSensor clone = new ExprSensor(this.sensorType);
-		clone.setIndex(ec.get());
-		return clone;
+		if (ec.get() != null) clone.setIndex((Expr) ec.get().clone());
+		return keepFlags(clone);
 	}
 }
\ No newline at end of file
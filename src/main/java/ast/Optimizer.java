@@ -0,0 +1,246 @@
+package ast;
+
+import cms.util.maybe.Maybe;
+import main.Util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Simplifies rules for running them: folds arithmetic, relations and conditions over
+ * constants, drops rules whose condition can never hold, and drops commands that can never
+ * run. The result is only meant to be run; the critter's program, which is what gets
+ * printed, is left as it is.
+ * <p>
+ * A simplified rule behaves exactly like the original under {@link simulation.Interpreter}:
+ * as and/or always evaluate a side that draws random numbers, a part of a condition is only
+ * dropped if it draws none. A division by zero is 0 and mod follows {@link Util#properMod},
+ * as in the interpreter.
+ */
+public final class Optimizer {
+
+    private Optimizer() {
+    }
+
+    /**
+     * @return rule simplified, or none if its condition can never hold
+     */
+    public static Maybe<Rule> optimize(Rule rule) {
+        // the interpreter evaluates the rule's first child, like nodeAt(1) here
+        Condition condition = optimize((Condition) rule.nodeAt(1));
+        if (!constant(condition).orElse(true)) return Maybe.none();
+
+        List<Cmd> commands = new ArrayList<>();
+        for (int i = 0; i < rule.cmdCnt(); i++) {
+            Cmd cmd = rule.getCommand(i);
+            commands.add(optimize(cmd));
+            if (cmd.getType() != Cmd.CmdType.UPDATE) break; // the rest never runs
+        }
+        return Maybe.some(new Rule(condition, commands));
+    }
+
+    /**
+     * @return the value of condition if it is a relation between two numbers, as conditions
+     * that always hold or never do are simplified to, or none otherwise
+     */
+    public static Maybe<Boolean> constant(Condition condition) {
+        if (condition instanceof ConditionRelation relation
+                && relation.getLeft() instanceof ExprNum left && relation.getRight() instanceof ExprNum right)
+            return Maybe.some(compare(left.getVal(), relation.getOpr(), right.getVal()));
+        return Maybe.none();
+    }
+
+    public static Condition optimize(Condition condition) {
+        if (condition instanceof ConditionBinary binary) {
+            Condition left = optimize((Condition) binary.nodeAt(1));
+            Condition right = optimize((Condition) binary.nodeAt(2));
+            boolean and = binary.getOpr() == ConditionBinary.BinCondOperator.AND;
+            Maybe<Boolean> leftValue = constant(left), rightValue = constant(right);
+            // a side that does not decide the result goes; a side that does decides it alone
+            if (leftValue.isPresent() && leftValue.orElse(false) == and) return right;
+            if (rightValue.isPresent() && rightValue.orElse(false) == and) return left;
+            if (leftValue.isPresent() && !drawsRandom(right)) return left;
+            if (rightValue.isPresent() && !drawsRandom(left)) return right;
+            return new ConditionBinary(left, binary.getOpr(), right);
+        }
+        if (condition instanceof ConditionRelation relation) {
+            Expr left = optimize(relation.getLeft()), right = optimize(relation.getRight());
+            if (left instanceof ExprNum l && right instanceof ExprNum r)
+                return truth(compare(l.getVal(), relation.getOpr(), r.getVal()));
+            return new ConditionRelation(left, relation.getOpr(), right);
+        }
+        return truth(false); // the interpreter treats any other condition as false
+    }
+
+    public static Expr optimize(Expr expr) {
+        if (expr instanceof ExprBinary binary) return optimize(binary);
+        if (expr instanceof ExprMem mem) return new ExprMem(optimize(mem.getIndex()));
+        if (expr instanceof ExprNum num) return new ExprNum(num.getVal());
+        if (expr instanceof ExprSensor sensor) {
+            ExprSensor optimized = new ExprSensor(sensor.getSensorType());
+            sensor.getIndex().thenDo(index -> optimized.setIndex(optimize(index)));
+            return optimized;
+        }
+        return new ExprNum(0); // the interpreter evaluates any other expression to 0
+    }
+
+    private static Expr optimize(ExprBinary binary) {
+        Expr left = optimize(binary.getLeft()), right = optimize(binary.getRight());
+        if (left instanceof ExprNum l && right instanceof ExprNum r) {
+            int a = l.getVal(), b = r.getVal();
+            return new ExprNum(switch (binary.getOpr()) {
+                case PLUS -> a + b;
+                case MINUS -> a - b;
+                case MUL -> a * b;
+                case DIV -> b == 0 ? 0 : Math.floorDiv(a, b);
+                case MOD -> Util.properMod(a, b);
+            });
+        }
+        switch (binary.getOpr()) {
+            case PLUS -> {
+                if (is(left, 0)) return right;
+                if (is(right, 0)) return left;
+            }
+            case MINUS -> {
+                if (is(right, 0)) return left;
+            }
+            case MUL -> {
+                if (is(left, 1)) return right;
+                if (is(right, 1)) return left;
+                if ((is(left, 0) && !drawsRandom(right)) || (is(right, 0) && !drawsRandom(left))) return new ExprNum(0);
+            }
+            case DIV -> {
+                // a zero divisor is 0 without evaluating the dividend at all
+                if (is(right, 0)) return new ExprNum(0);
+                if (is(right, 1)) return left;
+            }
+            default -> {
+            }
+        }
+        return new ExprBinary(left, binary.getOpr(), right);
+    }
+
+    private static boolean is(Expr expr, int value) {
+        return expr instanceof ExprNum num && num.getVal() == value;
+    }
+
+    private static Cmd optimize(Cmd cmd) {
+        Cmd optimized;
+        if (cmd instanceof CmdServe serve) optimized = new CmdServe(optimize(serve.getIndex()));
+        else if (cmd instanceof CmdUpdate update)
+            optimized = new CmdUpdate(optimize(update.getMemIndex()), optimize(update.getValue()));
+        else optimized = new Cmd(cmd.getType());
+        // mutations may have changed the type of a serve or update
+        optimized.setType(cmd.getType());
+        return optimized;
+    }
+
+    /**
+     * @return whether running program may read the memory at index, counting every read
+     * whose index is not a constant as a possible one
+     */
+    public static boolean mayRead(ProgramImpl program, int index) {
+        for (int i = 0; i < program.numRules(); i++) {
+            Rule rule = program.getRule(i);
+            if (mayRead(rule.nodeAt(1), index)) return true;
+            for (int c = 0; c < rule.cmdCnt(); c++) if (mayRead(rule.getCommand(c), index)) return true;
+        }
+        return false;
+    }
+
+    private static boolean mayRead(Node node, int index) {
+        if (node instanceof ExprMem mem) {
+            Expr at = optimize(mem.getIndex());
+            return !(at instanceof ExprNum num) || num.getVal() == index || mayRead(mem.getIndex(), index);
+        }
+        if (node instanceof ExprSensor sensor)
+            return sensor.getIndex().then(at -> mayRead(at, index)).orElse(false);
+        if (node instanceof ExprBinary binary) return mayRead(binary.getLeft(), index) || mayRead(binary.getRight(), index);
+        if (node instanceof ConditionRelation relation)
+            return mayRead(relation.getLeft(), index) || mayRead(relation.getRight(), index);
+        if (node instanceof ConditionBinary binary) return mayRead(binary.nodeAt(1), index) || mayRead(binary.nodeAt(2), index);
+        if (node instanceof CmdServe serve) return mayRead(serve.getIndex(), index);
+        if (node instanceof CmdUpdate update) return mayRead(update.getMemIndex(), index) || mayRead(update.getValue(), index);
+        return false;
+    }
+
+    /**
+     * @return whether evaluating node may draw random numbers, which is the only thing
+     * evaluating an expression or condition changes, so a node that does not can be left out
+     */
+    public static boolean drawsRandom(Node node) {
+        if (node instanceof ExprSensor sensor)
+            return sensor.getSensorType() == ExprSensor.SensorType.RANDOM || sensor.getIndex().then(Optimizer::drawsRandom).orElse(false);
+        if (node instanceof ExprMem mem) return drawsRandom(mem.getIndex());
+        if (node instanceof ExprBinary binary) return drawsRandom(binary.getLeft()) || drawsRandom(binary.getRight());
+        if (node instanceof ConditionRelation relation) return drawsRandom(relation.getLeft()) || drawsRandom(relation.getRight());
+        if (node instanceof ConditionBinary binary) return drawsRandom(binary.nodeAt(1)) || drawsRandom(binary.nodeAt(2));
+        return false;
+    }
+
+    /**
+     * Reorders the sides of and/or so that cheap tests come first and the expensive ones
+     * can be skipped: reading memory is cheap, nearby and ahead less so, and smell searches
+     * the world. Parts that draw random numbers are always evaluated, so they keep their
+     * order and go before the rest, which changes neither the result nor the numbers drawn.
+     *
+     * @return condition with the sides of every chain of and, or of or, reordered
+     */
+    public static Condition reorder(Condition condition) {
+        if (!(condition instanceof ConditionBinary binary)) return condition;
+        List<Condition> terms = new ArrayList<>();
+        flatten(binary, binary.getOpr(), terms);
+        terms.replaceAll(Optimizer::reorder);
+        List<Condition> ordered = new ArrayList<>(), rest = new ArrayList<>();
+        for (Condition term : terms) (drawsRandom(term) ? ordered : rest).add(term);
+        rest.sort(Comparator.comparingInt(Optimizer::cost)); // stable, so equal costs keep their order
+        ordered.addAll(rest);
+        Condition reordered = ordered.get(0);
+        for (int i = 1; i < ordered.size(); i++) reordered = new ConditionBinary(reordered, binary.getOpr(), ordered.get(i));
+        return reordered;
+    }
+
+    // adds the sides of the chain of opr at condition to terms, from left to right
+    private static void flatten(Condition condition, ConditionBinary.BinCondOperator opr, List<Condition> terms) {
+        if (condition instanceof ConditionBinary binary && binary.getOpr() == opr) {
+            flatten((Condition) binary.nodeAt(1), opr, terms);
+            flatten((Condition) binary.nodeAt(2), opr, terms);
+        } else {
+            terms.add(condition);
+        }
+    }
+
+    // a rough measure of the work of evaluating node, at most
+    private static int cost(Node node) {
+        if (node instanceof ExprSensor sensor) {
+            int index = sensor.getIndex().then(Optimizer::cost).orElse(0);
+            return index + switch (sensor.getSensorType()) {
+                case SMELL -> 1000;
+                case AHEAD, NEARBY -> 20;
+                case RANDOM -> 2;
+            };
+        }
+        if (node instanceof ExprMem mem) return 1 + cost(mem.getIndex());
+        if (node instanceof ExprBinary binary) return 1 + cost(binary.getLeft()) + cost(binary.getRight());
+        if (node instanceof ConditionRelation relation) return 1 + cost(relation.getLeft()) + cost(relation.getRight());
+        if (node instanceof ConditionBinary binary) return 1 + cost(binary.nodeAt(1)) + cost(binary.nodeAt(2));
+        return 0;
+    }
+
+    private static Condition truth(boolean value) {
+        return new ConditionRelation(new ExprNum(0),
+                value ? ConditionRelation.RelOperator.EQ : ConditionRelation.RelOperator.NE, new ExprNum(0));
+    }
+
+    private static boolean compare(int left, ConditionRelation.RelOperator opr, int right) {
+        return switch (opr) {
+            case LT -> left < right;
+            case LE -> left <= right;
+            case EQ -> left == right;
+            case GT -> left > right;
+            case GE -> left >= right;
+            case NE -> left != right;
+        };
+    }
+}
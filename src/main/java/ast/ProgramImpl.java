@@ -14,7 +14,7 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class ProgramImpl extends AbstractNode implements Program {
 
-    private final List<Rule> ruleList = new ArrayList<>();
+    private List<Rule> ruleList = new ArrayList<>();
 
     /**
      * @param r rule to add to the program
@@ -24,6 +24,20 @@ public class ProgramImpl extends AbstractNode implements Program {
         this.addChild(r);
     }
 
+    /**
+     * @param rules rules shared with the programs they are in, which stay their parents
+     * @return a program made of rules, which it shares rather than copies, so neither it
+     * nor the programs they are in may be changed in place afterwards
+     */
+    public static ProgramImpl sharing(List<Rule> rules) {
+        ProgramImpl program = new ProgramImpl();
+        for (Rule rule : rules) {
+            program.ruleList.add(rule);
+            program.share(rule);
+        }
+        return program;
+    }
+
     /**
      * Remove the rule at the specified index
      */
@@ -67,6 +81,42 @@ public class ProgramImpl extends AbstractNode implements Program {
         return m.apply(this, this.nodeAt(index));
     }
 
+    /**
+     * Mutates a copy of this program, like {@code clone().mutate()}, without copying all of
+     * it: the copy has its own mutated node, with the nodes below and above it, and shares
+     * every other subtree with this program, which is left as it is. As the shared nodes must
+     * not change, neither program may be mutated in place afterwards.
+     *
+     * @return the mutated copy
+     */
+    public ProgramImpl mutateCopy() {
+        int index = Util.randomInt(size());
+        Maybe<ProgramImpl> copy = mutateCopy(index, MutationFactory.fromType(Util.pickRulesetMutation()));
+        // a mutation that does not apply leaves the program as it is
+        return copy.isPresent() ? copy.orElse(null) : sharing(ruleList);
+    }
+
+    /**
+     * Applies m to the node at index of a copy of this program, like {@code
+     * clone().mutate(index, m)}, sharing what it does not change with this program, see
+     * {@link #mutateCopy()}
+     *
+     * @return the mutated copy, or {@code Maybe.none} if m cannot be applied to the node
+     */
+    public Maybe<ProgramImpl> mutateCopy(int index, Mutation m) {
+        ProgramImpl copy = (ProgramImpl) copyPathTo(index);
+        if (!m.canApply(copy.nodeAt(index))) return Maybe.none();
+        m.apply(copy, copy.nodeAt(index));
+        return Maybe.some(copy);
+    }
+
+    @Override
+    void replace(Node child, Node copy) {
+        super.replace(child, copy);
+        ruleList = new ArrayList<>(ruleList);
+        ruleList.replaceAll(rule -> rule == child ? (Rule) copy : rule);
+    }
+
     @Override
     public NodeCategory getCategory() {
         return NodeCategory.PROGRAM;
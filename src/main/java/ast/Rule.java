@@ -11,7 +11,7 @@ import java.util.List;
 public class Rule extends AbstractNode {
 
     private Condition condition;
-    private final List<Cmd> cmdList = new ArrayList<>();
+    private List<Cmd> cmdList = new ArrayList<>();
 
     /**
      * Represents a rule, i.e. a group of commands that will run if
@@ -34,6 +34,11 @@ public class Rule extends AbstractNode {
         this.addChild(condition);
     }
 
+    // the condition the rule prints, see Structure
+    Condition getCondition() {
+        return condition;
+    }
+
     /**
      * Add a command to the rule
      *
@@ -56,6 +61,7 @@ public class Rule extends AbstractNode {
      */
     public void removeCmd(int i) {
         cmdList.remove(i);
+        changed();
     }
 
     /**
@@ -72,6 +78,7 @@ public class Rule extends AbstractNode {
      */
     public void setCommand(Cmd cmd, int i) {
         cmdList.set(i, cmd);
+        changed();
     }
 
     @Override
@@ -96,9 +103,19 @@ public class Rule extends AbstractNode {
         return false;
     }
 
+    @Override
+    void replace(Node child, Node copy) {
+        super.replace(child, copy);
+        if (condition == child) condition = (Condition) copy;
+        cmdList = new ArrayList<>(cmdList);
+        cmdList.replaceAll(cmd -> cmd == child ? (Cmd) copy : cmd);
+    }
+
     @Override
     public Node clone() {
-        return new Rule((Condition) this.condition.clone(), new ArrayList<>(this.cmdList));
+        List<Cmd> commands = new ArrayList<>();
+        for (Cmd cmd : cmdList) commands.add((Cmd) cmd.clone());
+        return new Rule((Condition) this.condition.clone(), commands);
     }
 
     private String formatList(String s, List<?> list) {
@@ -0,0 +1,95 @@
+package ast;
+
+import java.util.List;
+
+/**
+ * Tells whether two trees are made of the same kinds of nodes with the same operators,
+ * values and signs, put together the same way, down to the parentheses they print with,
+ * and hashes trees so that trees that are the same get the same hash. See
+ * {@link AbstractNode#sameStructure} and {@link AbstractNode#structuralHash()}.
+ * <p>
+ * A node reaches its subtrees both through its list of children and through its own fields,
+ * which mutations do not always keep in step, so both are compared. The hash of a node is
+ * worked out from the hashes of its subtrees, which each node keeps, so trees that share
+ * subtrees, as a mutated program shares them with its parent, only hash the rest.
+ */
+final class Structure {
+
+    private static final Node[] NONE = {};
+
+    private Structure() {
+    }
+
+    /**
+     * @return the hash of the tree rooted at node, from the hashes of its subtrees
+     */
+    static int hash(Node node) {
+        int hash = node.getClass().getName().hashCode() * 31 + Long.hashCode(label(node));
+        List<Node> children = node.getChildren();
+        if (children != null) for (Node child : children) hash = hash * 31 + hashOf(child);
+        hash = hash * 31 + 1;
+        for (Node field : fields(node)) hash = hash * 31 + hashOf(field);
+        return hash;
+    }
+
+    private static int hashOf(Node node) {
+        return node instanceof AbstractNode tree ? tree.structuralHash() : 0;
+    }
+
+    /**
+     * @return whether the trees rooted at a and b are the same, which a tree is with any
+     * subtree it shares
+     */
+    static boolean same(Node a, Node b) {
+        if (a == b) return true;
+        if (a == null || b == null || a.getClass() != b.getClass() || label(a) != label(b)) return false;
+        if (hashOf(a) != hashOf(b)) return false;
+        List<Node> left = a.getChildren(), right = b.getChildren();
+        if (left == null || right == null) {
+            if (left != right) return false;
+        } else {
+            if (left.size() != right.size()) return false;
+            for (int i = 0; i < left.size(); i++) if (!same(left.get(i), right.get(i))) return false;
+        }
+        Node[] leftFields = fields(a), rightFields = fields(b);
+        if (leftFields.length != rightFields.length) return false;
+        for (int i = 0; i < leftFields.length; i++) if (!same(leftFields[i], rightFields[i])) return false;
+        return true;
+    }
+
+    // what tells node apart from other nodes of its class, leaving out its subtrees
+    private static long label(Node node) {
+        long label = 0;
+        if (node instanceof Expr expr) label = (expr.isNegative() ? 1 : 0) | (expr.hasParentheses() ? 2 : 0);
+        if (node instanceof ExprNum num) label |= (long) num.getVal() << 32;
+        if (node instanceof ExprBinary binary) label |= binary.getOpr().ordinal() << 2;
+        if (node instanceof ExprSensor sensor) label |= sensor.getSensorType().ordinal() << 2;
+        if (node instanceof ConditionBinary binary) label |= binary.getOpr().ordinal();
+        if (node instanceof ConditionRelation relation) label |= relation.getOpr().ordinal();
+        if (node instanceof Cmd cmd) label |= cmd.getType().ordinal();
+        return label;
+    }
+
+    // the subtrees node keeps in its fields
+    private static Node[] fields(Node node) {
+        if (node instanceof ProgramImpl program) {
+            Node[] rules = new Node[program.numRules()];
+            for (int i = 0; i < rules.length; i++) rules[i] = program.getRule(i);
+            return rules;
+        }
+        if (node instanceof Rule rule) {
+            Node[] fields = new Node[rule.cmdCnt() + 1];
+            fields[0] = rule.getCondition();
+            for (int i = 0; i < rule.cmdCnt(); i++) fields[i + 1] = rule.getCommand(i);
+            return fields;
+        }
+        if (node instanceof ExprBinary binary) return new Node[]{binary.getLeft(), binary.getRight()};
+        if (node instanceof ExprMem mem) return new Node[]{mem.getIndex()};
+        if (node instanceof ExprSensor sensor) return new Node[]{sensor.getIndex().orElse(null)};
+        if (node instanceof ConditionBinary binary) return new Node[]{binary.getLeft(), binary.getRight()};
+        if (node instanceof ConditionRelation relation) return new Node[]{relation.getLeft(), relation.getRight()};
+        if (node instanceof CmdUpdate update) return new Node[]{update.getMemIndex(), update.getValue()};
+        if (node instanceof CmdServe serve) return new Node[]{serve.getIndex()};
+        return NONE;
+    }
+}
@@ -5,6 +5,7 @@ import controller.Controller;
 import controller.ControllerFactory;
 import model.ReadOnlyCritter;
 import model.ReadOnlyWorld;
+import model.StepMode;
 
 import java.util.Arrays;
 import java.util.Scanner;
@@ -85,6 +86,7 @@ public final class Console {
         System.out.println("load <world_file>: start a new simulation with the world loaded from world_file");
         System.out.println("critters <critter_file> <n>: add n critters defined by critter_file randomly into the world");
         System.out.println("step <n>: advance the world by n time-steps");
+        System.out.println("mode <serial|tiled|intents> <threads>: choose how the world is advanced, on how many threads");
         System.out.println("info: print current time-step, number of critters living, and map of world");
         System.out.println("hex <c> <r>: print contents of hex at column c, row r");
         System.out.println("exit: exit the program");
@@ -112,7 +114,8 @@ public final class Console {
             case "critters": {
                 String filename = scan.next();
                 int n = scan.nextInt();
-                controller.loadCritters(filename, n);
+                if (!controller.loadCritters(filename, n))
+                    System.out.println("Not all critters could be loaded; the world may be full.");
                 break;
             }
             case "step": {
@@ -120,6 +123,17 @@ public final class Console {
                 controller.advanceTime(n);
                 break;
             }
+            case "mode": {
+                String mode = scan.next();
+                int threads = scan.nextInt();
+                try {
+                    if (!controller.setStepMode(StepMode.valueOf(mode.toUpperCase()), threads))
+                        System.out.println("The " + mode + " mode needs at least one thread.");
+                } catch (IllegalArgumentException e) {
+                    System.out.println(mode + " is not a valid mode.");
+                }
+                break;
+            }
             case "info":
                 worldInfo();
                 break;
@@ -21,6 +21,13 @@ public class Logger {
 
     private static int flags = 0;
 
+    /**
+     * @return whether messages with flag are printed, so building them can be skipped otherwise
+     */
+    public static boolean isEnabled(long flag) {
+        return (flags & flag) != 0;
+    }
+
     public static void info(String message, String source, long flag) {
         if ((flags & flag) != 0)
             System.out.println(source + ": " + message);
@@ -1,6 +1,7 @@
 package controller;
 
 import model.ReadOnlyWorld;
+import model.StepMode;
 
 import java.io.PrintStream;
 
@@ -55,6 +56,15 @@ public interface Controller {
      */
     boolean advanceTime(int n);
 
+    /**
+     * Selects how this and all later worlds are advanced.
+     *
+     * @param mode    the step mode, see {@link StepMode}.
+     * @param threads number of threads to step on, at least 1 unless mode is SERIAL.
+     * @return false if threads is not valid for mode, true otherwise.
+     */
+    boolean setStepMode(StepMode mode, int threads);
+
     /**
      * Print the world to the specified stream.
      *
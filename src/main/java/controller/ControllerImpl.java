@@ -1,6 +1,8 @@
 package controller;
 
+import console.Logger;
 import model.ReadOnlyWorld;
+import model.StepMode;
 import simulation.World;
 import simulation.loaders.CritterFactory;
 import simulation.loaders.WorldFactory;
@@ -14,6 +16,9 @@ public class ControllerImpl implements Controller {
 
     public World currentWorld;
 
+    private StepMode stepMode = StepMode.SERIAL;
+    private int stepThreads = 0;
+
     @Override
     public ReadOnlyWorld getReadOnlyWorld() {
         return currentWorld;
@@ -21,23 +26,32 @@ public class ControllerImpl implements Controller {
 
     @Override
     public void newWorld() {
-        currentWorld = WorldFactory.createRandomWorld();
+        replaceWorld(WorldFactory.createRandomWorld());
+        currentWorld.setStepMode(stepMode, stepThreads);
     }
 
     @Override
     public boolean loadWorld(String filename, boolean enableManna, boolean enableForcedMutation) {
-        currentWorld = WorldFactory.fromFile(filename);
+        replaceWorld(WorldFactory.fromFile(filename));
+        currentWorld.setStepMode(stepMode, stepThreads);
         return true;
     }
 
+    // makes world the current one, shutting down the one it replaces
+    private void replaceWorld(World world) {
+        if (currentWorld != null) currentWorld.shutdown();
+        currentWorld = world;
+    }
+
     @Override
     public boolean loadCritters(String filename, int n) {
         if (n < 0) return false;
         if (getReadOnlyWorld() == null) return false;
 
-        for (int i = 0; i < n; i++)
-            currentWorld.insertCritter(CritterFactory.fromFile(currentWorld, filename));
-        return true;
+        int unplaced = currentWorld.insertCritters(CritterFactory.supplierFromFile(currentWorld, filename), n);
+        if (unplaced > 0)
+            Logger.info(unplaced + " of " + n + " critters did not fit into the world", "ControllerImpl:loadCritters", Logger.FLAG_WORLD);
+        return unplaced == 0;
     }
 
     @Override
@@ -47,6 +61,15 @@ public class ControllerImpl implements Controller {
         return true;
     }
 
+    @Override
+    public boolean setStepMode(StepMode mode, int threads) {
+        if (mode != StepMode.SERIAL && threads < 1) return false;
+        stepMode = mode;
+        stepThreads = threads;
+        if (currentWorld != null) currentWorld.setStepMode(mode, threads);
+        return true;
+    }
+
     @Override
     public void printWorld(PrintStream out) {
         out.println(currentWorld);
@@ -14,6 +14,7 @@ import javafx.scene.transform.Translate;
 import main.Util;
 import simulation.Coordinate;
 import simulation.Hex;
+import simulation.World;
 
 import java.util.ArrayList;
 
@@ -42,17 +43,17 @@ public class Grid {
     public void init() {
         initialized = true;
         clear();
-        Hex[][] hexes = controller.currentWorld.getAllHexes();
+        World world = controller.currentWorld;
         ArrayList<ArrayList<Hex>> rows = new ArrayList<>();
-        int width = controller.currentWorld.getWidth();
+        int width = world.getWidth();
 
-        // Generate rows from the hexes array
-        for (int i = hexes.length - 1; i >= 0; i--) {
+        // Generate rows from the hexes of the world
+        for (int i = world.getHeight() - 1; i >= 0; i--) {
             if (i % 2 == 0) continue;
             ArrayList<Hex> row = new ArrayList<>();
-            for (int j = 1; j < hexes[i].length; j += 2) {
-                row.add(hexes[i - 1][j - 1]);
-                row.add(hexes[i][j]);
+            for (int j = 1; j < width; j += 2) {
+                row.add(world.hexAt(j - 1, i - 1));
+                row.add(world.hexAt(j, i));
             }
             rows.add(row);
         }
@@ -0,0 +1,110 @@
+package main;
+
+/**
+ * A seeded stream of pseudorandom numbers that can be split into independent streams.
+ * <p>
+ * This is the SplitMix64 generator used by {@link java.util.SplittableRandom}: the same seed
+ * always produces the same numbers, and a stream obtained by {@link #split()} is statistically
+ * independent of its parent. Unlike SplittableRandom, a stream can also be copied, so its
+ * state can be saved and restored.
+ * <p>
+ * A stream is not thread-safe; every thread, critter or world should draw from its own.
+ */
+public final class RandomStream {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private final long gamma;
+
+    /**
+     * Create a stream from seed
+     */
+    public RandomStream(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private RandomStream(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @return a new stream whose numbers are independent of this one's. Splitting advances
+     * this stream.
+     */
+    public RandomStream split() {
+        return new RandomStream(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * @return a stream in the same state as this one, which produces the same numbers
+     */
+    public RandomStream copy() {
+        return new RandomStream(seed, gamma);
+    }
+
+    /**
+     * Puts this stream into the state of other, which must have been copied or split from the
+     * same root
+     */
+    public void restore(RandomStream other) {
+        if (other.gamma != gamma) throw new IllegalArgumentException("streams do not match");
+        seed = other.seed;
+    }
+
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * @return an integer in the range [0, bound); bound must be positive
+     */
+    public int nextInt(int bound) {
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0) return r & m; // power of two
+        // reject the values that would make the result biased
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1) ;
+        return r;
+    }
+
+    public boolean nextBoolean() {
+        return nextInt() < 0;
+    }
+
+    /**
+     * @return a double in the range [0, 1)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    // gammas must be odd and have enough bit transitions to mix well
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -4,7 +4,7 @@ import ast.Node;
 import ast.NodeCategory;
 import ast.Program;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static ast.ExprBinary.BinExprOperator;
 
@@ -62,18 +62,52 @@ public class Util {
         return newType;
     }
 
+    /*
+     * The stream the random decisions of each thread are drawn from. While a world steps, it is
+     * the stream of the critter that is acting, which makes a run depend on the world's seed only.
+     */
+    private static final ThreadLocal<RandomStream> randomStream =
+            ThreadLocal.withInitial(() -> new RandomStream(newSeed()));
+
+    /**
+     * @return a fresh seed for worlds and threads which were not given one
+     */
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * @return the stream random decisions of the current thread are drawn from
+     */
+    public static RandomStream getRandomStream() {
+        return randomStream.get();
+    }
+
+    /**
+     * Makes the current thread draw its random decisions from stream
+     *
+     * @return the stream used until now, so that it can be restored
+     */
+    public static RandomStream setRandomStream(RandomStream stream) {
+        RandomStream previous = randomStream.get();
+        randomStream.set(stream);
+        return previous;
+    }
+
     /**
      * Returns an integer in the range [0,max)
      */
     public static int randomInt(int max) {
         if (max < 2) return 0;
-        return new Random().nextInt(max);
+        return randomStream.get().nextInt(max);
     }
 
     /**
-     * Returns an integer in the range [0,max) which is not equal to NOT
+     * Returns an integer in the range [0,max) which is not equal to NOT, or NOT itself if the
+     * range holds no other integer
      */
     public static int diffRandNum(int not, int max) {
+        if (max < 2 && (max < 1 || not == 0)) return not;
         int result = randomInt(max);
         while (result == not) result = randomInt(max);
         return result;
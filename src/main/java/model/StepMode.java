@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * The ways a world can be advanced by one step.
+ */
+public enum StepMode {
+    /**
+     * Critters act one after another, in the order they entered the world, each seeing the
+     * actions of the critters before it.
+     */
+    SERIAL,
+    /**
+     * The world is cut into tiles whose critters act concurrently; every critter still sees
+     * the actions of the critters acting before it in its tile.
+     */
+    TILED,
+    /**
+     * All critters choose their actions concurrently, seeing the world as it was at the start
+     * of the step, and the actions are then carried out one after another.
+     */
+    INTENTS
+}
@@ -1,20 +1,27 @@
 package simulation;
 
-import ast.Program;
+import ast.Cmd;
+import ast.Optimizer;
 import ast.ProgramImpl;
 import ast.Rule;
 import cms.util.maybe.Maybe;
 import console.Logger;
 import javafx.scene.paint.Color;
+import main.RandomStream;
 import main.Util;
 import model.ReadOnlyCritter;
+import simulation.vm.Bytecode;
+import simulation.vm.CompiledProgram;
+import simulation.vm.Host;
+import simulation.vm.Machine;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 import static model.Constants.*;
-import static model.Constants.DirectionConstants.DIR_AMOUNT;
+import static model.Constants.DirectionConstants.*;
 import static model.Constants.MemoryConstants.*;
 
 
@@ -26,18 +33,57 @@ public class Critter implements ReadOnlyCritter {
 
     private final String species;
     private int direction;
-    private Coordinate location;
+    private int column, row;
+    // index of the critter's hex in its world, -1 until the world places it
+    private int hexIndex = -1;
 
     private final int[] mem;
 
-    private final ProgramImpl program;
+    // never changed once the critter exists, so critters with the same genome share it; see program()
+    private ProgramTable.Genome genome;
+    private ProgramImpl program;
+    // whether the program came from budding or mating, rather than a species definition
+    private boolean mutated;
+    // whether the program may read mem[PASS], worked out the first time it matters
+    private Boolean readsPass;
+    // memory before the current pass and random numbers drawn so far, to find passes that change nothing
+    private int[] passMemory = new int[0];
+    private int randomDraws;
+    // fuel burnt so far in the current turn, what the turn may burn, which is unlimited outside
+    // of turns, and whether the turn ended at a rule it could not afford; see burn
+    private long fuel, budget = Long.MAX_VALUE;
+    private boolean outOfFuel;
+    // fuel burnt in the last turn and in all turns, and the turns that ran out of it
+    private long lastTurnFuel, totalFuel;
+    private int starvedTurns;
+    // the first rule the next run of the program needs to try, as found by a Batch
+    private int firstRule;
+    // what the critter has sensed during the current run of its program
+    private final SensorCache sensors = new SensorCache();
+    // the runners of the program, built the first time they are needed
+    private Interpreter interpreter, decider;
+    private Bytecode bytecode;
+    private CritterHost host;
+    private Machine machine;
+    private Maybe<CompiledProgram> jitted;
+    // whether the program currently running only records the action it chooses
+    private boolean deferActions;
 
     private Rule lastRule;
     private int lastRuleLine = 0;
 
     private Color color = Color.AQUAMARINE;
 
-    private int stepVal;
+    private boolean alive = true;
+
+    // the critter's random decisions are drawn from its own stream while it acts
+    private RandomStream random;
+
+    // the action decided on ahead of carrying it out, see decide, and its amount for serve
+    private Cmd.CmdType intent;
+    private int intentAmount;
+    // the posture other critters see while deciding
+    private int shownPosture;
 
     public Critter(World currentWorld, String species, int memSize, int defense, int offense, int size, int energy, int posture, ProgramImpl program) {
         if (memSize < MIN_MEMORY) memSize = MIN_MEMORY;
@@ -53,31 +99,99 @@ public class Critter implements ReadOnlyCritter {
         mem[SIZE] = size;
         mem[ENERGY] = energy;
         mem[POSTURE] = posture;
-        this.program = program;
+        this.genome = currentWorld == null || program == null ? new ProgramTable.Genome(program) : currentWorld.intern(program);
+        this.program = genome.program();
         this.species = species;
 
         this.currentWorld = currentWorld;
-        direction = Util.randomInt(DIR_AMOUNT);
+        // offspring split their stream off the acting parent's
+        random = Util.getRandomStream().split();
+        direction = random.nextInt(DIR_AMOUNT);
     }
 
     public void setLocation(Coordinate coordinate) {
-        this.location = coordinate;
+        setLocation(coordinate.column(), coordinate.row());
     }
 
+    /**
+     * Sets where the critter should be placed once it is added to a world
+     */
     public void setLocation(int column, int row) {
-        this.location = new Coordinate(column, row);
+        this.column = column;
+        this.row = row;
+        this.hexIndex = -1;
+    }
+
+    /**
+     * Called by the world whenever it puts this critter on the hex at index, (column, row)
+     */
+    void place(int index, int column, int row) {
+        this.hexIndex = index;
+        this.column = column;
+        this.row = row;
+    }
+
+    int getHexIndex() {
+        return hexIndex;
+    }
+
+    /**
+     * Sets the stream this critter draws its random decisions from
+     */
+    public void setRandomStream(RandomStream random) {
+        this.random = random;
+    }
+
+    public RandomStream getRandomStream() {
+        return random;
+    }
+
+    /**
+     * The state of a critter that a tick changes before it acts on the world. A tick that is
+     * aborted before its action, see {@link ParallelStepper}, is undone by restoring it.
+     */
+    static final class Checkpoint {
+        private int[] mem = new int[0];
+        private int direction;
+        private Rule lastRule;
+        private int lastRuleLine;
+        private RandomStream random;
+        private long lastTurnFuel, totalFuel;
+        private int starvedTurns;
+
+        void save(Critter critter) {
+            mem = critter.saveMemory(mem);
+            direction = critter.direction;
+            lastRule = critter.lastRule;
+            lastRuleLine = critter.lastRuleLine;
+            random = critter.random.copy();
+            lastTurnFuel = critter.lastTurnFuel;
+            totalFuel = critter.totalFuel;
+            starvedTurns = critter.starvedTurns;
+        }
+
+        void restore(Critter critter) {
+            critter.restoreMemory(mem);
+            critter.direction = direction;
+            critter.lastRule = lastRule;
+            critter.lastRuleLine = lastRuleLine;
+            critter.random.restore(random);
+            critter.lastTurnFuel = lastTurnFuel;
+            critter.totalFuel = totalFuel;
+            critter.starvedTurns = starvedTurns;
+        }
     }
 
     public void setDirection(int direction) {
-        this.direction = direction;
+        this.direction = Util.properMod(direction, DIR_AMOUNT);
     }
 
     public int getColumn() {
-        return location.column();
+        return column;
     }
 
     public int getRow() {
-        return location.row();
+        return row;
     }
 
     public String getSpecies() {
@@ -89,6 +203,40 @@ public class Critter implements ReadOnlyCritter {
         return Arrays.copyOf(this.mem, this.mem.length);
     }
 
+    /**
+     * Reads memory without copying it like {@link #getMemory()} does
+     *
+     * @return the value at index, or 0 if index is outside the critter's memory
+     */
+    int readMem(int index) {
+        return index < 0 || index >= mem.length ? 0 : mem[index];
+    }
+
+    /**
+     * Assigns value to the memory at index, unless index is outside the critter's memory
+     */
+    void writeMem(int index, int value) {
+        if (index >= 0 && index < mem.length) mem[index] = value;
+    }
+
+    /**
+     * Copies the critter's memory into snapshot, or into a new array if snapshot is too small
+     *
+     * @return the array holding the copy
+     */
+    int[] saveMemory(int[] snapshot) {
+        if (snapshot.length < mem.length) snapshot = new int[mem.length];
+        System.arraycopy(mem, 0, snapshot, 0, mem.length);
+        return snapshot;
+    }
+
+    /**
+     * Restores the memory copied by {@link #saveMemory}
+     */
+    void restoreMemory(int[] snapshot) {
+        System.arraycopy(snapshot, 0, mem, 0, mem.length);
+    }
+
     @Override
     public String getProgramString() {
         if (this.program == null || this.program.numRules() < 0) return "";
@@ -113,6 +261,27 @@ public class Critter implements ReadOnlyCritter {
         this.lastRuleLine = line;
     }
 
+    /**
+     * @return the fuel the critter's program burnt in its last turn, see {@link #tick()}
+     */
+    public long getLastTurnFuel() {
+        return lastTurnFuel;
+    }
+
+    /**
+     * @return the fuel the critter's program has burnt in all its turns
+     */
+    public long getTotalFuel() {
+        return totalFuel;
+    }
+
+    /**
+     * @return the number of turns the critter ran out of fuel
+     */
+    public int getStarvedTurns() {
+        return starvedTurns;
+    }
+
     public int getLastRuleLine() {
         return lastRuleLine;
     }
@@ -129,21 +298,302 @@ public class Critter implements ReadOnlyCritter {
         return this.mem[POSTURE];
     }
 
+    /**
+     * Runs the critter's program for a turn: passes over its rules until a rule performs an
+     * action, at most MAX_RULES_PER_TURN times, and then rests. A pass that neither acts nor
+     * changes anything would repeat itself for the rest of the turn, so the passes after it
+     * are skipped, leaving the pass number where they would have.
+     * <p>
+     * Running the program burns fuel: every rule tried burns one unit for each of its nodes
+     * before it starts, and every ahead[d] it senses burns d more, one for each hex it may
+     * walk. A rule the rest of the critter's budget (see {@link World#setFuelBudgets}) cannot
+     * pay for does not start; the turn ends there and the critter waits. A rule that has
+     * started may go over the budget by what its sensors burn, which the next rule cannot
+     * then pay for. The fuel depends only on what the program does, so it is the same
+     * however the program is run.
+     */
     public void tick() {
-        Interpreter ip = new Interpreter(this);
-        boolean actionUpdate = ip.run();
+        RandomStream previous = Util.setRandomStream(random);
+        try {
+            deferActions = false;
+            runProgram();
+            rest();
+        } finally {
+            Util.setRandomStream(previous);
+        }
+    }
+
+    /**
+     * Runs the critter's program like {@link #tick()}, but only records the action it
+     * chooses, which {@link #commit()} carries out later. Does not change the world.
+     */
+    void decide() {
+        RandomStream previous = Util.setRandomStream(random);
+        try {
+            intent = null;
+            deferActions = true;
+            runProgram();
+        } finally {
+            Util.setRandomStream(previous);
+        }
+    }
+
+    /**
+     * Carries out the action chosen by {@link #decide()} and ends the critter's turn
+     */
+    void commit() {
+        RandomStream previous = Util.setRandomStream(random);
+        try {
+            if (intent != null) act(intent, intentAmount);
+            intent = null;
+            rest();
+        } finally {
+            Util.setRandomStream(previous);
+        }
+    }
+
+    private void runProgram() {
+        sensors.clear();
+        if (currentWorld.usesTieredExecution() && bytecode == null && !promote()) {
+            interpret();
+            // counted once the program ran through, as a tick aborted before this is run again
+            currentWorld.getTieredExecution().ran(genome, currentWorld.reordersConditions(), currentWorld.usesJit());
+            return;
+        }
+        if (currentWorld.usesJit()) {
+            // mutants rarely share their program, so only those whose genome is translated get it
+            if (jitted == null) {
+                boolean reorder = currentWorld.reordersConditions();
+                compiled();
+                jitted = mutated ? genome.translation(reorder) : genome.translated(reorder);
+            }
+            if (jitted.isPresent()) {
+                CompiledProgram translated = jitted.orElse(null);
+                runPasses(first -> runTranslated(translated, first));
+                return;
+            }
+        }
+        if (!currentWorld.usesCompiledPrograms()) {
+            interpret();
+            return;
+        }
+        compiled();
+        runPasses(first -> machine.run(bytecode.ruleStart(first)));
+    }
+
+    private void interpret() {
+        if (interpreter == null) {
+            interpreter = new Interpreter(this, false);
+            decider = new Interpreter(this, true);
+        }
+        runPasses(deferActions ? decider::run : interpreter::run);
+    }
+
+    // compiles the program to bytecode the first time it is needed
+    private Bytecode compiled() {
+        if (bytecode == null) adopt(genome.compiled(currentWorld.reordersConditions()));
+        return bytecode;
+    }
+
+    private void adopt(Bytecode compiled) {
+        bytecode = compiled;
+        host = new CritterHost();
+        machine = new Machine(bytecode, host);
+    }
+
+    /*
+     * Under tiered execution, switches to the compiled forms of the genome if it is hot,
+     * returning whether it did
+     */
+    private boolean promote() {
+        ProgramTable.Promotion promoted = genome.promoted();
+        if (promoted == null) return false;
+        adopt(promoted.bytecode());
+        jitted = promoted.translated();
+        return true;
+    }
+
+    private boolean runTranslated(CompiledProgram translated, int first) {
+        int result = translated.run(host, first);
+        if (result == CompiledProgram.NO_RULE) return false;
+        setLastRule(bytecode.rule(result >> 1), result >> 1);
+        return (result & 1) == 1;
+    }
+
+    // runs passes, each testing the rules from the given one on, see firstRule
+    private void runPasses(IntPredicate pass) {
+        if (readsPass == null) readsPass = Optimizer.mayRead(program, PASS);
+        budget = currentWorld.fuelBudget();
+        fuel = 0;
+        outOfFuel = false;
+        int draws = startPass();
+        int first = firstRule;
+        firstRule = 0;
+        boolean actionUpdate = burnSkipped(first) && pass.test(first);
+        // the fuel of the pass that just ended
+        long cost = fuel;
         this.mem[PASS] = 1;
-        while (this.mem[PASS] < MAX_RULES_PER_TURN) {
-            if (actionUpdate) break;
-            actionUpdate = ip.run();
+        while (this.mem[PASS] < MAX_RULES_PER_TURN && !actionUpdate && !outOfFuel) {
+            if (repeats(draws)) {
+                // every pass left would do and burn exactly what this one did, as long as the fuel lasts
+                int left = MAX_RULES_PER_TURN - mem[PASS];
+                int passes = cost == 0 ? left : (int) Math.min(left, Math.max(budget - fuel, 0) / cost);
+                currentWorld.countSkippedPasses(passes);
+                mem[PASS] += passes;
+                fuel += passes * cost;
+                // otherwise the next pass runs out of fuel on the way, or just after
+                if (passes == left) break;
+            }
+            draws = startPass();
+            long start = fuel;
+            actionUpdate = pass.test(0);
+            cost = fuel - start;
             this.mem[PASS]++;
         }
-        rest();
-        this.currentWorld.addFood();
+        if (outOfFuel) starve();
+        lastTurnFuel = fuel;
+        totalFuel += fuel;
+        budget = Long.MAX_VALUE;
+    }
+
+    /**
+     * Burns fuel for the rule about to be tried, see {@link #tick()}
+     *
+     * @return whether the critter could afford it; if not, it burns nothing, and the pass
+     * has to end without trying the rule
+     */
+    boolean burn(int ruleFuel) {
+        if (ruleFuel > budget - fuel) {
+            outOfFuel = true;
+            return false;
+        }
+        fuel += ruleFuel;
+        return true;
+    }
+
+    // burns the fuel of the rules before first, which a pass starting at first is known to skip
+    private boolean burnSkipped(int first) {
+        for (int i = 0; i < first; i++)
+            if (!burn(program.getRule(i).size())) return false;
+        return true;
+    }
+
+    // ends a turn that ran out of fuel with a wait
+    private void starve() {
+        starvedTurns++;
+        if (deferActions) intend(Cmd.CmdType.WAIT, 0);
+        else act(Cmd.CmdType.WAIT, 0);
+    }
+
+    // remembers the memory before a pass, returning the number of random numbers drawn so far
+    private int startPass() {
+        if (!readsPass) passMemory = saveMemory(passMemory);
+        return randomDraws;
+    }
+
+    /*
+     * Whether the pass that just ended without an action leaves the critter as it found it:
+     * it drew no random numbers and changed no memory, and the program does not read the
+     * pass number, so the next pass sees and does the same
+     */
+    private boolean repeats(int draws) {
+        if (readsPass || draws != randomDraws) return false;
+        for (int i = 0; i < mem.length; i++)
+            if (i != PASS && mem[i] != passMemory[i]) return false;
+        return true;
+    }
+
+    /**
+     * Gives a compiled program access to this critter
+     */
+    private final class CritterHost implements Host {
+
+        @Override
+        public int[] memory() {
+            return mem;
+        }
+
+        @Override
+        public int ahead(int distance) {
+            return senseAhead(distance);
+        }
+
+        @Override
+        public boolean burn(int fuel) {
+            return Critter.this.burn(fuel);
+        }
+
+        @Override
+        public int nearby(int direction) {
+            return senseNearby(direction);
+        }
+
+        @Override
+        public int smell() {
+            return senseSmell();
+        }
+
+        @Override
+        public int random(int n) {
+            return Critter.this.random(n);
+        }
+
+        @Override
+        public void act(Cmd.CmdType type, int amount) {
+            if (deferActions) intend(type, amount);
+            else Critter.this.act(type, amount);
+        }
+
+        @Override
+        public void fired(Rule rule, int index) {
+            setLastRule(rule, index);
+        }
+    }
+
+    /**
+     * Performs the action of type; amount is the energy to serve
+     */
+    void act(Cmd.CmdType type, int amount) {
+        sensors.clear();
+        switch (type) {
+            case BUD -> bud();
+            case EAT -> eat();
+            case GROW -> grow();
+            case LEFT -> turnLeft();
+            case RIGHT -> turnRight();
+            case BACKWARD -> moveBackward();
+            case FORWARD -> moveForward();
+            case MATE -> mate();
+            case WAIT -> rest();
+            case ATTACK -> attack();
+            case SERVE -> serve(amount);
+        }
+    }
+
+    /**
+     * Records the action of type as the one to carry out on commit
+     */
+    void intend(Cmd.CmdType type, int amount) {
+        intent = type;
+        intentAmount = amount;
+    }
+
+    /**
+     * @return the action chosen by {@link #decide()}, or null if the critter chose none
+     */
+    Cmd.CmdType getIntent() {
+        return intent;
+    }
+
+    /**
+     * Fixes the posture other critters see while deciding to the current one
+     */
+    void showPosture() {
+        shownPosture = mem[POSTURE];
     }
 
     public int getComplexity() {
-        return getProgram().numRules() * RULE_COST + (mem[OFFENSE] + mem[DEFENSE] * ABILITY_COST);
+        return program.numRules() * RULE_COST + (mem[OFFENSE] + mem[DEFENSE] * ABILITY_COST);
     }
 
     public Color getColor() {
@@ -195,18 +645,14 @@ public class Critter implements ReadOnlyCritter {
 
     private void move(int dir) {
         if (!decrementEnergy(mem[SIZE] * MOVE_COST) || ahead(1) != 0) return;
-        if (!Hex.isValidHexCoordinate(location.getCoordinateAt(dir).column(), location.getCoordinateAt(dir).row())) return;
-        if (currentWorld.hexAt(location.getCoordinateAt(dir)).getType() != Hex.HexType.EMPTY) return;
+        int target = currentWorld.neighbor(hexIndex, dir);
+        if (currentWorld.typeAt(target) != Hex.HexType.EMPTY) return;
 
-        Coordinate oldLocation = location;
-        location = location.getCoordinateAt(dir);
+        int oldIndex = hexIndex;
+        currentWorld.moveCritter(this, target);
 
-        currentWorld.hexAt(oldLocation).setType(Hex.HexType.EMPTY);
-        currentWorld.hexAt(location).setType(Hex.HexType.CRITTER);
-        currentWorld.hexAt(location).setCritter(this);
-
-        currentWorld.updateHex(oldLocation);
-        currentWorld.updateHex(location);
+        currentWorld.updateHex(oldIndex);
+        currentWorld.updateHex(hexIndex);
     }
 
     /**
@@ -220,16 +666,14 @@ public class Critter implements ReadOnlyCritter {
         if (ahead(1) >= -1) return; //NO FOOD FOUND
         int foodEnergy = -ahead(1) - 1; //-n -1
 
-        Hex foodHex = hexAhead(1);
-        if (foodEnergy != foodHex.getFoodValue()) Logger.error("FOOD ENERGY != FOOD HEX", "Critter:eat", Logger.FLAG_CRITTER_ACTION);
+        int foodIndex = indexAhead(1);
+        if (foodEnergy != currentWorld.foodAt(foodIndex)) Logger.error("FOOD ENERGY != FOOD HEX", "Critter:eat", Logger.FLAG_CRITTER_ACTION);
 
         int energyTaken = Math.min(foodEnergy, ENERGY_PER_SIZE * mem[SIZE]); //if foodVal > maximum, inc max
 
         incrementEnergy(energyTaken);
-        foodHex.setFoodValue(foodHex.getFoodValue() - energyTaken);
-        if (foodHex.getFoodValue() == 0) foodHex.setType(Hex.HexType.EMPTY);
-        else foodHex.setType(Hex.HexType.FOOD);
-        currentWorld.updateHex(foodHex.getCoordinate());
+        currentWorld.setFoodAt(foodIndex, currentWorld.foodAt(foodIndex) - energyTaken);
+        currentWorld.updateHex(foodIndex);
     }
 
     /**
@@ -240,15 +684,16 @@ public class Critter implements ReadOnlyCritter {
     public void serve(int energy) {
         Logger.info("SERVE," + energy, "Critter:serve", Logger.FLAG_CRITTER_ACTION);
 
-        Hex frontHex = hexAhead(1);
+        int frontIndex = indexAhead(1);
+        Hex.HexType frontType = currentWorld.typeAt(frontIndex);
 
-        if (frontHex.getType() != Hex.HexType.FOOD && frontHex.getType() != Hex.HexType.EMPTY) return;
+        if (frontType != Hex.HexType.FOOD && frontType != Hex.HexType.EMPTY) return;
 
         energy = Math.min(energy, mem[ENERGY]); //ensures energy is not overspent
         decrementEnergy(mem[SIZE] + energy);
 
-        frontHex.setFoodValue(frontHex.getFoodValue() + energy);
-        currentWorld.updateHex(frontHex.getCoordinate());
+        currentWorld.setFoodAt(frontIndex, currentWorld.foodAt(frontIndex) + energy);
+        currentWorld.updateHex(frontIndex);
         //TODO CRITTER CANT DIE OFF A SERVE
     }
 
@@ -262,7 +707,7 @@ public class Critter implements ReadOnlyCritter {
         Logger.info("ATTACK", "Critter:attack", Logger.FLAG_CRITTER_ACTION);
         if (!decrementEnergy(mem[SIZE] * ATTACK_COST)) return;
 
-        Critter enemy = currentWorld.hexAt(location.getCoordinateAt(direction)).getCritter();
+        Critter enemy = currentWorld.critterAt(currentWorld.neighbor(hexIndex, direction));
         if (enemy == null) return;
 
         int damage = (int) Math.round(BASE_DAMAGE * mem[SIZE] * p(DAMAGE_INC * (mem[SIZE] * mem[OFFENSE] - enemy.mem[SIZE] * enemy.mem[OFFENSE])));
@@ -294,29 +739,27 @@ public class Critter implements ReadOnlyCritter {
         if (!decrementEnergy(BUD_COST * this.getComplexity())) return;
         Logger.info("bud condition passed", "Critter:bud", Logger.FLAG_CRITTER_ACTION);
 
-        //Random mutation is performed on this Critter's program
-        Program pc = (Program) this.program.clone();
-        ProgramImpl mpc = (ProgramImpl) pc.mutate();
+        //Random mutation is performed on a copy of this Critter's program, which shares the rest
+        ProgramImpl mpc = this.program.mutateCopy();
         Critter child = new Critter(currentWorld, species, mem[MEM_SIZE], mem[DEFENSE], mem[OFFENSE], INITIAL_SIZE, INITIAL_ENERGY, INITIAL_POSTURE, mpc);
+        child.mutated = true;
 
-        Coordinate coord = location.getBottom();
-        if (currentWorld.hexAt(coord).getType() == Hex.HexType.INVALID) coord = location.getTop();
+        int childIndex = currentWorld.neighbor(hexIndex, BOTTOM);
+        if (childIndex < 0) childIndex = currentWorld.neighbor(hexIndex, TOP);
 
-        currentWorld.insertCritterAtLocation(child, coord.row(), coord.column());
+        currentWorld.insertCritterAtIndex(child, childIndex);
         Logger.info("BUD done", "Critter:bud", Logger.FLAG_CRITTER_ACTION);
     }
 
     public void mate() {
-        Hex nearbyHex = hexAhead(1);
-        if (nearbyHex.getType() != Hex.HexType.CRITTER) return;
+        Critter partner = currentWorld.critterAt(indexAhead(1));
+        if (partner == null) return;
 
-        Critter partner = nearbyHex.getCritter();
         boolean thisIsMainPartner = Util.randomInt(2) == 1;
         int[] inheritedMem = thisIsMainPartner ? this.mem : partner.mem;
 
         //pick rules starting from the parent having the least number
         //of rules. Rules are picked in sequence from each parent
-        ProgramImpl cProgram = new ProgramImpl();
         ProgramImpl father;
         ProgramImpl mother;
         if (this.program.numRules() < partner.program.numRules()) {
@@ -327,15 +770,18 @@ public class Critter implements ReadOnlyCritter {
             father = this.program;
         }
 
+        //the rules are shared with the parents rather than copied, as programs are not changed in place
+        List<Rule> rules = new ArrayList<>();
         for (int i = 0; i < mother.numRules(); i++)
-            cProgram.addRule((i % 2 == 0) ? (Rule) mother.getRule(i).clone() : (Rule) father.getRule(i).clone());
+            rules.add((i % 2 == 0) ? mother.getRule(i) : father.getRule(i));
+        ProgramImpl cProgram = ProgramImpl.sharing(rules);
 
         Critter child = new Critter(currentWorld, species, inheritedMem[MEM_SIZE], inheritedMem[DEFENSE], inheritedMem[OFFENSE], INITIAL_SIZE, INITIAL_ENERGY, INITIAL_POSTURE, cProgram);
+        child.mutated = true;
 
         //place the child behind one of the parents chosen randomly
-        Hex behindHex = currentWorld.hexAt(thisIsMainPartner ? location.getCoordinateAt(3) : partner.location.getCoordinateAt(3));
-        if (behindHex.getType() != Hex.HexType.CRITTER)
-            currentWorld.insertCritterAtLocation(child, behindHex.getColumn(), behindHex.getRow());
+        Critter mainPartner = thisIsMainPartner ? this : partner;
+        currentWorld.insertCritterAtIndex(child, currentWorld.neighbor(mainPartner.hexIndex, BOTTOM));
     }
 
     /**
@@ -352,8 +798,7 @@ public class Critter implements ReadOnlyCritter {
      * @return n
      */
     public int nearby(int dir) {
-        Hex nearbyHex = currentWorld.hexAt(location.getCoordinateAt(dir));
-        return nearbyHex.evaluate(this);
+        return currentWorld.contentsAt(currentWorld.neighbor(hexIndex, dir), this);
     }
 
     /**
@@ -363,35 +808,26 @@ public class Critter implements ReadOnlyCritter {
      * A negative distance is treated as zero distance.s
      */
     public int ahead(int distance) {
-        return hexAhead(distance).evaluate(this);
+        return currentWorld.contentsAt(indexAhead(distance), this);
     }
 
-    private Hex hexAhead(int distance) {
-        Coordinate coordinate = location;
+    //index of the hex distance steps ahead, or -1 once that leaves the world
+    private int indexAhead(int distance) {
+        int index = hexIndex;
 
         if (distance < 0) distance = 0;
-        for (int i = 0; i < distance; i++) {
-            coordinate = coordinate.getCoordinateAt(direction);
+        for (int i = 0; i < distance && index >= 0; i++) {
+            index = currentWorld.neighbor(index, direction);
         }
-        return currentWorld.hexAt(coordinate);
+        return index;
     }
 
-    private static class FringeHex {
-        Hex hx;
-        boolean visited;
-        int turns;
-
-        int direction;
-
-        int initialTurnDirection;
-
-        FringeHex(Hex _hx) {
-            hx = _hx;
-            turns = 0;
-            visited = false;
-            direction = 0;
-            initialTurnDirection = 0;
-        }
+    /**
+     * @return the appearance of this critter as seen by observer, see {@link #nearby(int)}
+     */
+    int appearance(Critter observer) {
+        int posture = observer != this && currentWorld.isDeciding() ? shownPosture : mem[POSTURE];
+        return mem[SIZE] * 1000 + posture * 10 + Util.properMod(DIR_AMOUNT + direction - observer.direction, DIR_AMOUNT);
     }
 
     /**
@@ -408,121 +844,36 @@ public class Critter implements ReadOnlyCritter {
      * @return 1000 · distance + direction
      */
     public int smell(int distance) {
-        int cost = 1_000_000;
         distance = Math.max(distance, MAX_SMELL_DISTANCE);
+        //the shared food distances only cover the default smell distance
+        SmellField field = distance == MAX_SMELL_DISTANCE ? currentWorld.getSmellField() : null;
+        return currentWorld.getSmellSearch().smell(hexIndex, direction, distance, field);
+    }
 
-        List<ArrayList<FringeHex>> fringes = new ArrayList<>();
-        List<FringeHex> visitedList = new ArrayList<>();
-        //add this critter's hex to fringe[0]
-        ArrayList<FringeHex> fringe = new ArrayList<>();
-        Hex ch = this.currentWorld.hexAt(this.location);
-        FringeHex fhx = new FringeHex(ch);
-        fringe.add(fhx);
-        fhx.visited = true;
-        fhx.direction = this.direction;
-        //add this FringeHex to the visited list
-        visitedList.add(fhx);
-        fringes.add(fringe);
-        int foodFringeIndex = -1;
-        for (int i = 1; (i < distance && (foodFringeIndex == -1)); i++) {
-            //create the next fringe
-            ArrayList<FringeHex> nextFringe = new ArrayList<FringeHex>();
-            fringes.add(nextFringe);
-            //for each Hex in the previous fringe (i-1)
-            int previousFringeIndex = i - 1;
-            ArrayList<FringeHex> previousFringe = fringes.get(previousFringeIndex);
-            for (FringeHex cFhx : previousFringe) {
-                //get a FringeHex for processing
-                //check each of the 6 directions and
-                //add each neighbor if they have not been visited
-                //and are not blocked
-                for (int dir = 0; dir < 6; dir++) {
-                    Coordinate neighborCoordinate = cFhx.hx.getCoordinate().getCoordinateAt(dir);
-                    if (!Hex.isValidHexCoordinate(neighborCoordinate.column(), neighborCoordinate.row())) continue;
-
-                    Hex neighborHex = this.currentWorld.hexAt(neighborCoordinate);
-                    //if this neighbor has not been visited and is not blocked
-                    //add it to the next fringe
-                    FringeHex nFhx = new FringeHex(neighborHex);
-                    if (((nFhx.hx.getType() == Hex.HexType.EMPTY) || (nFhx.hx.getType() == Hex.HexType.FOOD)) && (containsFringeHex(visitedList, nFhx) == null)) {
-                        //add this neighbor to the visited list
-                        visitedList.add(nFhx);
-                        nFhx.visited = true;
-                        nFhx.turns = cFhx.turns;
-                        nFhx.initialTurnDirection = cFhx.initialTurnDirection;
-                        //if the direction of this FringeHex does not match the
-                        //direction of the FringeHex we are currently processing
-                        //increment the turns
-                        if (cFhx.direction != dir) {
-                            //store the initial turns the
-                            //critter has to make to get to this FringeHex
-                            if (previousFringeIndex == 0) {
-                                nFhx.initialTurnDirection = computeInitialTurnDirection(cFhx.direction, dir);
-                            }
-                            nFhx.turns += computeTurns(cFhx.direction, dir);
-                        }
-                        nFhx.direction = dir;
-                        nextFringe.add(nFhx);
-                        //if food has been found
-                        //then need to stop looking
-                        //after processing this fringe
-                        if (nFhx.hx.getType() == Hex.HexType.FOOD) {
-                            foodFringeIndex = i;
-                        }
-                    }
-                }
-            }
-        }
+    /*
+     * The sensors as read by the critter's program, which may read the same sensor many
+     * times while nothing else it senses can change; see SensorCache
+     */
 
-        //if food was found
-        FringeHex selectedFoodFhx = null;
-        if (foodFringeIndex != -1) {
-            //get all the hex's with food
-            //find all the neighbors for each food hex
-            //if a neighbor is there in the previous fringe
-            //then it means that we can get from their to the food
-            //use neighbor as a candidate for cost computation
-            ArrayList<FringeHex> foodFringe = fringes.get(foodFringeIndex);
-            for (FringeHex foodFhx : foodFringe) {
-                if (foodFhx.hx.getType() == Hex.HexType.FOOD) {
-                    //get all the neighbors of this food hex
-                    //look for each neighbor in the previous fringe list
-                    for (int dir = 0; dir < 6; dir++) {
-                        Coordinate cFhxCoordinate = foodFhx.hx.getCoordinate().getCoordinateAt(dir);
-                        if (!Hex.isValidHexCoordinate(cFhxCoordinate.column(), cFhxCoordinate.row())) continue;
-
-                        Hex neighborHex = this.currentWorld.hexAt(cFhxCoordinate);
-                        FringeHex nFhx = new FringeHex(neighborHex);
-
-                        if ((nFhx = containsFringeHex(fringes.get(foodFringeIndex - 1), nFhx)) != null) {
-                            int foodDist = foodFringeIndex - 1 + nFhx.turns;
-                            int foodCost = foodDist * 100;
-
-                            int foodDirection = getDirection(nFhx, foodFhx);
-                            if (foodDirection != nFhx.direction) {
-                                foodDist += 1;
-                                foodCost = foodDist * 100;
-                            }
-                            foodCost += nFhx.initialTurnDirection;
-
-                            Logger.info("Food cost: " + foodCost + " for (" + nFhx.hx.getType() + ","
-                                    + nFhx.hx.getColumn() + "," + nFhx.hx.getRow() + "," + nFhx.visited + ","
-                                    + nFhx.turns + "," + nFhx.direction + "," + nFhx.initialTurnDirection + ")"
-                                    + "(Food Hex=" + foodFhx.hx.getColumn() + "," + foodFhx.hx.getRow() + ")", "Critter:smell", Logger.FLAG_CRITTER_ACTION);
-
-                            if (foodCost < cost) {
-                                cost = foodCost;
-                                selectedFoodFhx = foodFhx;
-                            }
-                        }
-                    }
-                }
-            }
-        }
+    int senseNearby(int dir) {
+        if (!currentWorld.usesSensorCache()) return nearby(dir);
+        int slot = SensorCache.NEARBY + Math.floorMod(dir, DIR_AMOUNT);
+        return sensors.has(slot) ? sensors.get(slot) : sensors.put(slot, nearby(dir));
+    }
+
+    int senseAhead(int distance) {
+        distance = Math.max(distance, 0);
+        fuel += distance;
+        // ahead[0] is the critter itself, whose posture its program may change without acting
+        if (!currentWorld.usesSensorCache() || distance == 0 || distance >= SensorCache.AHEAD_DISTANCES)
+            return ahead(distance);
+        int slot = SensorCache.AHEAD + distance;
+        return sensors.has(slot) ? sensors.get(slot) : sensors.put(slot, ahead(distance));
+    }
 
-        if (selectedFoodFhx != null)
-            Logger.info("Selected food hex: (" + selectedFoodFhx.hx.getColumn() + "," + selectedFoodFhx.hx.getRow() + ")", "Critter:smell", Logger.FLAG_CRITTER_ACTION);
-        return cost;
+    int senseSmell() {
+        if (!currentWorld.usesSensorCache()) return smell(-1);
+        return sensors.has(SensorCache.SMELL) ? sensors.get(SensorCache.SMELL) : sensors.put(SensorCache.SMELL, smell(-1));
     }
 
     /**
@@ -534,13 +885,43 @@ public class Critter implements ReadOnlyCritter {
      * @return random integer from 0 to n-1
      */
     public int random(int n) {
+        randomDraws++;
         return Util.randomInt(n);
     }
 
+    /**
+     * @return a copy of the critter's program, which may be changed freely
+     */
     public ProgramImpl getProgram() {
         return (ProgramImpl) program.clone();
     }
 
+    /**
+     * @return the critter's program itself, which must not be changed
+     */
+    ProgramImpl program() {
+        return program;
+    }
+
+    ProgramTable.Genome genome() {
+        return genome;
+    }
+
+    /**
+     * @return the critter's memory itself, which must not be changed
+     */
+    int[] memory() {
+        return mem;
+    }
+
+    /**
+     * Lets the first pass of the next run of the program skip the rules before the one at
+     * index first, which are known not to fire on the critter's memory as it is now
+     */
+    void skipRulesBefore(int first) {
+        firstRule = first;
+    }
+
     public void setMem(int index, int value) {
         this.mem[index] = value;
     }
@@ -571,66 +952,36 @@ public class Critter implements ReadOnlyCritter {
 
     //kills the critter, generating the food and nullifying the object
     private void kill() {
-        Hex deathHex = currentWorld.hexAt(location);
-        deathHex.setFoodValue(deathHex.getFoodValue() + FOOD_PER_SIZE * mem[SIZE]);
-        deathHex.becomeFood();
-        currentWorld.decrementCritterNumber();
-        currentWorld.updateHex(deathHex.getCoordinate());
+        if (!alive) return;
+        alive = false;
+        currentWorld.setFoodAt(hexIndex, currentWorld.foodAt(hexIndex) + FOOD_PER_SIZE * mem[SIZE]);
+        currentWorld.setTypeAt(hexIndex, Hex.HexType.FOOD);
+        currentWorld.removeCritter(this);
+        currentWorld.updateHex(hexIndex);
     }
 
+    /**
+     * Moves the critter into currentWorld, whose critters it shares its genome with from
+     * now on, see {@link World#intern}
+     */
     public void setWorld(World currentWorld) {
         this.currentWorld = currentWorld;
+        if (currentWorld == null || program == null) return;
+        genome = currentWorld.intern(program);
+        program = genome.program();
+        // anything worked out from the critter's own copy of the genome goes with it
+        bytecode = null;
+        jitted = null;
     }
 
     public World getWorld() {
         return this.currentWorld;
     }
 
-    private int getDirection(FringeHex from, FringeHex to) {
-        int direction = 0;
-        for (int dir = 0; dir < 6; dir++) {
-            Coordinate dirCoordinate = from.hx.getCoordinate().getCoordinateAt(dir);
-            if (!Hex.isValidHexCoordinate(dirCoordinate.column(), dirCoordinate.row())) continue;
-
-            Hex neighborHex = this.currentWorld.hexAt(dirCoordinate);
-            if ((neighborHex.getColumn() == to.hx.getColumn()) && (neighborHex.getRow() == to.hx.getRow())) {
-                direction = dir;
-                break;
-            }
-        }
-        return direction;
-    }
-
-    private int computeInitialTurnDirection(int currentDir, int targetDir) {
-        int turns = 0;
-        boolean leftTurn = (currentDir - targetDir) > 0;
-        int dirDiff = Math.abs(currentDir - targetDir);
-
-        if (dirDiff > 3) leftTurn = !leftTurn;
-        else turns = dirDiff;
-
-        return leftTurn ? 6 - turns : turns;
-    }
-
-    private int computeTurns(int currentDir, int targetDir) {
-        int dirDiff = Math.abs(currentDir - targetDir);
-
-        return (dirDiff > 3) ? 6 - dirDiff : dirDiff;
-    }
-
-    private FringeHex containsFringeHex(List<FringeHex> list, FringeHex fhx) {
-        if ((list == null) || (list.isEmpty())) return null;
-
-        for (FringeHex hex : list)
-            if ((hex.hx.getColumn() == fhx.hx.getColumn()) && (hex.hx.getRow() == fhx.hx.getRow())) return hex;
-        return null;
-    }
-
-    public int getStepVal() {
-        return stepVal;
-    }
-
-    public void setStepVal(int stepVal) {
-        this.stepVal = stepVal;
+    /**
+     * @return whether this critter is still alive, i.e. has not been killed
+     */
+    public boolean isAlive() {
+        return alive;
     }
 }
\ No newline at end of file
@@ -2,58 +2,63 @@ package simulation;
 
 import gui.Hexagon;
 import javafx.scene.paint.Color;
-import main.Util;
 
 import java.util.Arrays;
 
-import static model.Constants.DirectionConstants.DIR_AMOUNT;
 import static model.Constants.ROCK_VALUE;
 import static simulation.Hex.HexType.CRITTER;
 
 /**
  * Represents a Hex tile in the world.
+ * <p>
+ * A Hex is a lightweight view on one cell of a {@link HexStorage}: reads and writes go
+ * straight to the storage's arrays. Hexes obtained from a {@link World} view the world's
+ * cells, while the public constructors create detached hexes backed by a storage of their
+ * own, e.g. to describe the contents of a world file.
  */
 public class Hex {
 
-    private final Coordinate coordinate;
-    private HexType type;
-    private Critter critter;
-
-    private int foodValue = 0;
+    private final HexStorage storage;
+    private final int index;
+    private final int column, row;
 
     public Hex(int column, int row, HexType type) {
-        this.coordinate = new Coordinate(column, row);
-        this.type = type;
+        this(new HexStorage(1, 1), 0, column, row);
+        setType(type);
     }
 
     public Hex(Coordinate coordinate, Critter critter) {
         this(coordinate.column(), coordinate.row(), CRITTER);
-        this.critter = critter;
-        this.critter.setLocation(coordinate);
+        setCritter(critter);
+        critter.setLocation(coordinate);
     }
 
     public Hex(int column, int row, HexType type, int foodValue) {
         this(column, row, type);
-        this.foodValue = foodValue;
+        storage.setFood(index, foodValue);
     }
 
-    public void tryTickCritter() {
-        if (critter != null) this.critter.tick();
+    /**
+     * Create a view on the cell at index of storage, located at (column, row) in the world
+     */
+    Hex(HexStorage storage, int index, int column, int row) {
+        this.storage = storage;
+        this.index = index;
+        this.column = column;
+        this.row = row;
     }
 
     public void setCritter(Critter critter) {
-        this.critter = critter;
-        type = CRITTER;
+        storage.setCritter(index, critter);
     }
 
     public void setCritter(Critter critter, Color critterColor) {
-        this.critter = critter;
         critter.setColor(critterColor);
-        type = CRITTER;
+        storage.setCritter(index, critter);
     }
 
     public Critter getCritter() {
-        return this.critter;
+        return storage.getCritter(index);
     }
 
     public static boolean isValidHexCoordinate(int column, int row) {
@@ -61,39 +66,37 @@ public class Hex {
     }
 
     public Coordinate getCoordinate() {
-        return coordinate;
+        return new Coordinate(column, row);
     }
 
     public int getColumn() {
-        return coordinate.column();
+        return column;
     }
 
     public int getRow() {
-        return coordinate.row();
+        return row;
     }
 
     public HexType getType() {
-        return type;
+        return storage.getType(index);
     }
 
     public void setType(HexType type) {
-        this.type = type;
-        if (type != CRITTER) this.critter = null;
+        storage.setType(index, type);
     }
 
     public void becomeFood() { //on Critter death
-        this.type = HexType.FOOD;
-        critter = null;
+        storage.setType(index, HexType.FOOD);
     }
 
     public int getFoodValue() {
-        return foodValue;
+        return storage.getFood(index);
     }
 
     public void setFoodValue(int foodValue) {
-        this.foodValue = foodValue;
-        if (foodValue == 0) type = HexType.EMPTY;
-        if (foodValue > 0) type = HexType.FOOD;
+        storage.setFood(index, foodValue);
+        if (foodValue == 0) storage.setType(index, HexType.EMPTY);
+        if (foodValue > 0) storage.setType(index, HexType.FOOD);
     }
 
     public enum HexType {EMPTY, ROCK, FOOD, CRITTER, INVALID}
@@ -102,10 +105,11 @@ public class Hex {
      * Prints information about the hex to the console
      */
     public String printInfo() {
-        return getHexagon().getHex().getCoordinate() + ": " + switch (type) {
+        Critter critter = getCritter();
+        return getCoordinate() + ": " + switch (getType()) {
             case INVALID -> "this hex should not exist";
             case EMPTY -> "empty hex";
-            case FOOD -> foodValue + " Food present";
+            case FOOD -> getFoodValue() + " Food present";
             case ROCK -> "a big, heavy rock";
             case CRITTER ->
                 "CRITTER FOUND!\nSPECIES: " + critter.getSpecies() + "\nMEM: " +
@@ -115,7 +119,7 @@ public class Hex {
 
     public int evaluate(Critter observer) {
         return switch (this.getType()) {
-            case CRITTER -> critter.getSize() * 1000 + critter.getPosture() * 10 + dirInRelation(observer);
+            case CRITTER -> getCritter().appearance(observer);
             case FOOD -> -this.getFoodValue() - 1;
             case ROCK -> ROCK_VALUE;
             default -> 0;
@@ -124,7 +128,7 @@ public class Hex {
 
     @Override
     public String toString() {
-        return switch (type) {
+        return switch (getType()) {
             case EMPTY -> "-";
             case ROCK -> "#";
             case FOOD -> "F";
@@ -133,22 +137,18 @@ public class Hex {
         };
     }
 
-    private int dirInRelation(Critter observer) {
-        return Util.properMod(DIR_AMOUNT + critter.getDirection() - observer.getDirection(), DIR_AMOUNT);
-    }
-
     public Hexagon getHexagon() {
         var v = new Hexagon(30, getColor(), this);
-        v.setArrow(type == CRITTER);
+        v.setArrow(getType() == CRITTER);
         return v;
     }
 
     public Color getColor() {
-        return switch (type) {
+        return switch (getType()) {
             case EMPTY -> Color.WHITE;
             case ROCK -> Color.DARKGRAY;
             case FOOD -> Color.DARKMAGENTA;
-            case CRITTER -> this.critter.getColor();
+            case CRITTER -> getCritter().getColor();
             case INVALID -> Color.RED;
         };
     }
@@ -0,0 +1,62 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * A set of hex indices that supports adding, removing and picking a member by position in
+ * constant time. Members are kept in a dense array; removing a member moves the last member
+ * into its place, so positions change as the set changes.
+ */
+final class HexSet {
+
+    private final int[] members;
+    // position[index] is where index is kept in members, or -1 if it is not a member
+    private final int[] position;
+    private int size = 0;
+
+    /**
+     * Create an empty set for indices in [0, capacity)
+     */
+    HexSet(int capacity) {
+        members = new int[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    boolean contains(int index) {
+        return position[index] >= 0;
+    }
+
+    void add(int index) {
+        if (position[index] >= 0) return;
+        position[index] = size;
+        members[size++] = index;
+    }
+
+    void remove(int index) {
+        int at = position[index];
+        if (at < 0) return;
+        int last = members[--size];
+        members[at] = last;
+        position[last] = at;
+        position[index] = -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Requires: {@code 0 <= i < size()}
+     *
+     * @return the member at position i
+     */
+    int get(int i) {
+        return members[i];
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) position[members[i]] = -1;
+        size = 0;
+    }
+}
@@ -0,0 +1,223 @@
+package simulation;
+
+import static model.Constants.DirectionConstants.*;
+import static simulation.Hex.HexType.*;
+
+/**
+ * Storage engine for the hexes of a world. Instead of one {@link Hex} object per cell, the
+ * type, food value and critter of every cell are kept in parallel arrays. {@link Hex} objects
+ * are only created as views on demand.
+ * <p>
+ * Only valid hexes, i.e. those with an even column + row, are stored. They are packed row by
+ * row: row r holds the columns of parity r, so (column, row) is stored at
+ * {@code row * stride + column / 2} with {@code stride = ceil(width / 2)}.
+ * <p>
+ * The neighbors of every cell are computed once, when the storage is created, so moving
+ * around the grid is a single array lookup. Directions leading off the grid yield -1.
+ * <p>
+ * The storage keeps track of which cells are EMPTY and which hold FOOD, so a cell of either
+ * type can be picked at random in constant time. While cells are changed concurrently, this
+ * tracking must be suspended, see {@link #suspendTracking()}.
+ * <p>
+ * Invariant: a cell only holds a critter while its type is {@code CRITTER}.
+ */
+final class HexStorage {
+
+    private static final Hex.HexType[] TYPES = Hex.HexType.values();
+
+    private final int width;
+    private final int height;
+    private final int stride;
+
+    private final byte[] types;
+    private final int[] food;
+    private final Critter[] critters;
+
+    // neighbors[index * DIR_AMOUNT + direction] is the neighbor of index in direction, or -1
+    private final int[] neighbors;
+
+    private final HexSet empty;
+    private final HexSet foods;
+    private boolean tracking = true;
+
+    private SmellField smellField;
+
+    /**
+     * Create a storage for width * height cells, all of them EMPTY
+     *
+     * @param width  number of columns
+     * @param height number of rows
+     */
+    HexStorage(int width, int height) {
+        this.width = width;
+        this.height = height;
+        stride = (width + 1) / 2;
+        types = new byte[stride * height];
+        food = new int[stride * height];
+        critters = new Critter[stride * height];
+        neighbors = new int[stride * height * DIR_AMOUNT];
+        empty = new HexSet(stride * height);
+        foods = new HexSet(stride * height);
+
+        for (int index = 0; index < size(); index++) {
+            int column = column(index), row = row(index);
+            // padding cells at the end of a row are not part of the grid
+            boolean padding = column >= width;
+            for (int direction = 0; direction < DIR_AMOUNT; direction++)
+                neighbors[index * DIR_AMOUNT + direction] = padding ? -1 : computeNeighbor(column, row, direction);
+            if (!padding) empty.add(index);
+        }
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return number of cells, some of which may be unused padding at the end of odd rows
+     */
+    int size() {
+        return types.length;
+    }
+
+    /**
+     * @return whether (column, row) is a valid hex within the bounds of the storage
+     */
+    boolean contains(int column, int row) {
+        return column >= 0 && row >= 0 && column < width && row < height && ((column + row) & 1) == 0;
+    }
+
+    /**
+     * Requires: {@code contains(column, row)}
+     *
+     * @return the index of the cell at (column, row)
+     */
+    int index(int column, int row) {
+        return row * stride + (column >> 1);
+    }
+
+    int column(int index) {
+        return ((index % stride) << 1) + (row(index) & 1);
+    }
+
+    int row(int index) {
+        return index / stride;
+    }
+
+    /**
+     * @param index     index of a cell
+     * @param direction direction to look in, see {@link model.Constants.DirectionConstants}
+     * @return the index of the neighboring cell in that direction, or -1 if it lies outside
+     * the storage
+     */
+    int neighbor(int index, int direction) {
+        return neighbors[index * DIR_AMOUNT + Math.floorMod(direction, DIR_AMOUNT)];
+    }
+
+    private int computeNeighbor(int column, int row, int direction) {
+        switch (direction) {
+            case TOP -> row += 2;
+            case TOP_RIGHT -> { column++; row++; }
+            case BOTTOM_RIGHT -> { column++; row--; }
+            case BOTTOM -> row -= 2;
+            case BOTTOM_LEFT -> { column--; row--; }
+            default -> { column--; row++; } // TOP_LEFT
+        }
+        return contains(column, row) ? index(column, row) : -1;
+    }
+
+    Hex.HexType getType(int index) {
+        return TYPES[types[index]];
+    }
+
+    /**
+     * Sets the type of a cell; any critter on it is removed unless the type is {@code CRITTER}
+     */
+    void setType(int index, Hex.HexType type) {
+        Hex.HexType oldType = getType(index);
+        types[index] = (byte) type.ordinal();
+        if (type != CRITTER) critters[index] = null;
+        if (oldType != type) typeChanged(index, oldType, type);
+    }
+
+    int getFood(int index) {
+        return food[index];
+    }
+
+    void setFood(int index, int foodValue) {
+        food[index] = foodValue;
+    }
+
+    Critter getCritter(int index) {
+        return critters[index];
+    }
+
+    /**
+     * Puts a critter on a cell, making it a {@code CRITTER} cell
+     */
+    void setCritter(int index, Critter critter) {
+        Hex.HexType oldType = getType(index);
+        critters[index] = critter;
+        types[index] = (byte) CRITTER.ordinal();
+        if (oldType != CRITTER) typeChanged(index, oldType, CRITTER);
+    }
+
+    private void typeChanged(int index, Hex.HexType oldType, Hex.HexType newType) {
+        if (!tracking) return;
+        if (oldType == EMPTY) empty.remove(index);
+        else if (oldType == FOOD) foods.remove(index);
+        if (newType == EMPTY) empty.add(index);
+        else if (newType == FOOD) foods.add(index);
+        if (smellField != null) smellField.typeChanged(index, oldType, newType);
+    }
+
+    /**
+     * @return the EMPTY cells
+     */
+    HexSet emptyCells() {
+        return empty;
+    }
+
+    /**
+     * @return the FOOD cells
+     */
+    HexSet foodCells() {
+        return foods;
+    }
+
+    /**
+     * Stops keeping track of changes of cell types, so cells can be changed concurrently.
+     * Until {@link #resumeTracking()}, the EMPTY and FOOD cells and the smell field are not
+     * up to date.
+     */
+    void suspendTracking() {
+        tracking = false;
+    }
+
+    /**
+     * Keeps track of changes of cell types again, after bringing the EMPTY and FOOD cells up
+     * to date and invalidating the smell field
+     */
+    void resumeTracking() {
+        empty.clear();
+        foods.clear();
+        for (int index = 0; index < size(); index++) {
+            Hex.HexType type = getType(index);
+            if (type == EMPTY && column(index) < width) empty.add(index);
+            else if (type == FOOD) foods.add(index);
+        }
+        if (smellField != null) smellField.invalidate();
+        tracking = true;
+    }
+
+    /**
+     * Sets the smell field to notify about changes of hex types, or null for none
+     */
+    void setSmellField(SmellField smellField) {
+        this.smellField = smellField;
+    }
+}
@@ -0,0 +1,189 @@
+package simulation;
+
+import ast.Cmd;
+import simulation.vm.Batch;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Steps a world in two phases, see {@link model.StepMode#INTENTS}.
+ * <p>
+ * In the first phase every critter runs its program and decides on an action without
+ * carrying it out, see {@link Critter#decide()}. Nothing in the world changes during this
+ * phase, so the critters all see the world as it was at the start of the step and are
+ * evaluated concurrently. Each critter still applies its memory updates to itself right
+ * away; other critters see the posture it had at the start of the step.
+ * <p>
+ * In the second phase the actions are carried out on the stepping thread, see
+ * {@link Critter#commit()}. An action is checked against the world as it is when it is
+ * carried out, so when actions conflict the one carried out first wins. They are carried out
+ * in this order:
+ * <ol>
+ *     <li>attacks, so fights are between the critters facing each other at the start of the
+ *     step; a critter killed in an attack does not act</li>
+ *     <li>eating and serving, before anyone moves; critters eating the same food eat one after
+ *     another, later ones eating what is left</li>
+ *     <li>moves; the first critter moving into a hex takes it, the others fail and pay for the
+ *     move as they would when moving into an occupied hex</li>
+ *     <li>budding and mating, so offspring can be placed on hexes left by moving critters; a
+ *     critter only mates if a partner is still ahead of it</li>
+ *     <li>everything else: turning, growing, waiting and not acting at all</li>
+ * </ol>
+ * Within each group, critters act in the order they entered the world. The result of a step
+ * does not depend on the number of threads.
+ * <p>
+ * As no critter's memory changes before it decides, critters that share a genome can have
+ * the rules their program starts with evaluated together beforehand, see {@link Batch} and
+ * {@link World#setEnableBatchEvaluation(boolean)}.
+ */
+final class IntentStepper {
+
+    private static final int PRIORITIES = 5;
+    // each thread evaluates several chunks, so uneven chunks even out
+    private static final int CHUNKS_PER_THREAD = 4;
+    // fewer critters sharing a genome are not worth evaluating together
+    private static final int MIN_BATCH = 16;
+
+    private final World world;
+    private final int threads;
+    private final ExecutorService executor;
+    private final ThreadLocal<SmellSearch> searches;
+
+    private final List<List<Critter>> byPriority = new ArrayList<>();
+    private final Batch.Lanes lanes = new Batch.Lanes();
+    private boolean deciding = false;
+
+    /**
+     * Create a stepper for world which evaluates programs on the given number of threads;
+     * with one thread, programs are evaluated on the stepping thread
+     */
+    IntentStepper(World world, HexStorage storage, int threads) {
+        this.world = world;
+        this.threads = threads;
+        executor = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "world-decide");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        searches = ThreadLocal.withInitial(() -> new SmellSearch(storage));
+        for (int i = 0; i < PRIORITIES; i++) byPriority.add(new ArrayList<>());
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return whether critters are deciding on their actions, i.e. must not change the world
+     */
+    boolean isDeciding() {
+        return deciding;
+    }
+
+    /**
+     * @return the search engine of the current thread, for smelling while deciding
+     */
+    SmellSearch search() {
+        return searches.get();
+    }
+
+    /**
+     * Performs one step for the first count critters of registry
+     */
+    void step(List<Critter> registry, int count) {
+        List<Critter> acting = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Critter critter = registry.get(i);
+            if (!critter.isAlive()) continue;
+            critter.showPosture();
+            acting.add(critter);
+        }
+        // bring the smell field up to date, so reading it does not change it
+        SmellField field = world.getSmellField();
+        if (field != null) field.update();
+
+        if (world.usesBatchEvaluation()) evaluateBatches(acting);
+        deciding = true;
+        try {
+            decide(acting);
+        } finally {
+            deciding = false;
+        }
+
+        for (Critter critter : acting) byPriority.get(priority(critter.getIntent())).add(critter);
+        for (List<Critter> group : byPriority) {
+            for (Critter critter : group)
+                if (critter.isAlive()) critter.commit();
+            group.clear();
+        }
+    }
+
+    // evaluates the leading rules of genomes shared by enough critters for all of them at once
+    private void evaluateBatches(List<Critter> acting) {
+        Map<ProgramTable.Genome, List<Critter>> byGenome = new IdentityHashMap<>();
+        for (Critter critter : acting)
+            if (critter.program() != null) byGenome.computeIfAbsent(critter.genome(), genome -> new ArrayList<>()).add(critter);
+        for (Map.Entry<ProgramTable.Genome, List<Critter>> entry : byGenome.entrySet()) {
+            List<Critter> critters = entry.getValue();
+            if (critters.size() < MIN_BATCH) continue; // left to run on their own
+            Batch batch = entry.getKey().batch();
+            if (batch.rules() == 0) continue;
+            int[][] mems = new int[critters.size()][];
+            for (int i = 0; i < mems.length; i++) mems[i] = critters.get(i).memory();
+            int[] first = new int[mems.length];
+            batch.firstRules(mems, mems.length, first, lanes);
+            for (int i = 0; i < mems.length; i++) critters.get(i).skipRulesBefore(first[i]);
+        }
+    }
+
+    private void decide(List<Critter> acting) {
+        if (executor == null) {
+            for (Critter critter : acting) critter.decide();
+            return;
+        }
+        int chunks = threads * CHUNKS_PER_THREAD;
+        List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            List<Critter> chunk = acting.subList(acting.size() * i / chunks, acting.size() * (i + 1) / chunks);
+            tasks.add(() -> {
+                for (Critter critter : chunk) critter.decide();
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while stepping", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static int priority(Cmd.CmdType intent) {
+        if (intent == null) return 4;
+        return switch (intent) {
+            case ATTACK -> 0;
+            case EAT, SERVE -> 1;
+            case FORWARD, BACKWARD -> 2;
+            case BUD, MATE -> 3;
+            default -> 4;
+        };
+    }
+
+    /**
+     * Stops the threads of this stepper
+     */
+    void shutdown() {
+        if (executor != null) executor.shutdownNow();
+    }
+}
@@ -4,6 +4,8 @@ import ast.*;
 import console.Logger;
 import main.Util;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static model.Constants.MemoryConstants.POSTURE;
@@ -12,18 +14,40 @@ public class Interpreter {
 
     private final Critter critter;
     private final Program program;
+    // whether actions are only recorded as the critter's intent, see Critter#decide
+    private final boolean deferActions;
+    // whether each right side of and/or evaluated so far draws random numbers
+    private final Map<Node, Boolean> drawsRandom = new IdentityHashMap<>();
 
     public Interpreter(Critter critter) {
+        this(critter, false);
+    }
+
+    /**
+     * Create an interpreter that, if deferActions is set, records the action a critter
+     * chooses instead of performing it
+     */
+    public Interpreter(Critter critter, boolean deferActions) {
         this.critter = critter;
-        this.program = critter.getProgram();
+        this.program = critter.program();
+        this.deferActions = deferActions;
     }
 
     public boolean run() {
+        return run(0);
+    }
+
+    /**
+     * Runs one pass like {@link #run()}, skipping the rules before the one at index first,
+     * which must be known not to fire
+     */
+    public boolean run(int first) {
         boolean actionUpdate = false;
         int numRules = ((ProgramImpl) program).numRules();
 
-        for (int i = 0; i < numRules; i++) {
+        for (int i = first; i < numRules; i++) {
             Rule rule = ((ProgramImpl) program).getRule(i);
+            if (!critter.burn(rule.size())) return false;
             boolean cmdCondition = parseCond((Condition) rule.nodeAt(1));
 
             if (!cmdCondition) continue;
@@ -44,12 +68,18 @@ public class Interpreter {
         return actionUpdate;
     }
 
+    /**
+     * Evaluates cond. The right side of and/or is skipped when the left side decides the
+     * result, unless it draws random numbers, so that the same numbers are drawn either way.
+     */
     public boolean parseCond(Condition cond) {
         if (cond instanceof ConditionBinary binCond) {
+            boolean or = binCond.getOpr() == ConditionBinary.BinCondOperator.OR;
             boolean a = parseCond((Condition) cond.nodeAt(1));
-            boolean b = parseCond((Condition) cond.nodeAt(2));
-            if (binCond.getOpr() == ConditionBinary.BinCondOperator.OR) return a || b;
-            if (binCond.getOpr() == ConditionBinary.BinCondOperator.AND) return a && b;
+            Node right = cond.nodeAt(2);
+            if (a == or && !drawsRandom.computeIfAbsent(right, Optimizer::drawsRandom)) return a;
+            boolean b = parseCond((Condition) right);
+            return or ? a || b : a && b;
         }
         if (cond instanceof ConditionRelation relCond) return parseRel(relCond);
         return false; //can only be a binary or relation condition
@@ -80,9 +110,7 @@ public class Interpreter {
             };
         }
         if (expr instanceof ExprMem) {
-            int index = parseExpr(((ExprMem) expr).getIndex());
-            if (index > critter.getMemSize() || index < 0) return 0;
-            return critter.getMemory()[index];
+            return critter.readMem(parseExpr(((ExprMem) expr).getIndex()));
         }
         if (expr instanceof ExprNum) return ((ExprNum) expr).getVal();
 
@@ -93,14 +121,14 @@ public class Interpreter {
                     sensorExpr.getIndex().thenDo(sensorIndex::set);
                     int index = parseExpr(sensorIndex.get());
                     if (index < 0) index = 0;
-                    yield critter.ahead(index);
+                    yield critter.senseAhead(index);
                 }
-                case SMELL -> critter.smell(-1);
+                case SMELL -> critter.senseSmell();
                 case NEARBY -> {
                     AtomicReference<Expr> sensorIndex = new AtomicReference<>();
                     sensorExpr.getIndex().thenDo(sensorIndex::set);
 
-                    yield critter.nearby(parseExpr(sensorIndex.get()));
+                    yield critter.senseNearby(parseExpr(sensorIndex.get()));
                 }
                 case RANDOM -> {
                     AtomicReference<Expr> sensorIndex = new AtomicReference<>();
@@ -115,7 +143,8 @@ public class Interpreter {
     public void parseCommand(Cmd cmd) {
         if (cmd instanceof CmdServe serveCmd) {
             int energy = Math.min(parseExpr(serveCmd.getIndex()), 0);
-            critter.serve(energy);
+            if (deferActions) critter.intend(Cmd.CmdType.SERVE, energy);
+            else critter.serve(energy);
         } else if (cmd instanceof CmdUpdate updateCmd) {
             int index = parseExpr(updateCmd.getMemIndex());
             int value = parseExpr(updateCmd.getValue());
@@ -123,20 +152,11 @@ public class Interpreter {
 
             if (index == POSTURE && value < 0) value = 0;
             if (index == POSTURE && value > 99) value = 99;
-            critter.setMem(index, value);
+            critter.writeMem(index, value);
+        } else if (deferActions) {
+            critter.intend(cmd.getType(), 0);
         } else {
-            switch (cmd.getType()) {
-                case BUD -> critter.bud();
-                case EAT -> critter.eat();
-                case GROW -> critter.grow();
-                case LEFT -> critter.turnLeft();
-                case RIGHT -> critter.turnRight();
-                case BACKWARD -> critter.moveBackward();
-                case FORWARD -> critter.moveForward();
-                case MATE -> critter.mate();
-                case WAIT -> critter.rest();
-                case ATTACK -> critter.attack();
-            }
+            critter.act(cmd.getType(), 0);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,256 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static model.Constants.MAX_SMELL_DISTANCE;
+
+/**
+ * Steps a world on several threads, see {@link World#setParallelism(int)}.
+ * <p>
+ * The grid is cut into rectangular tiles, which are colored like a checkerboard with four
+ * colors. A step runs in four phases, one per color; within a phase the tiles of that color
+ * are ticked concurrently, each on one thread, critter after critter in the order of the
+ * world's registry. While its tile is ticked, a critter may read and change the hexes of the
+ * tile and of a halo of {@link #HALO} hexes around it. Tiles of the same color are far enough
+ * apart that these regions never overlap, so no two threads ever touch the same hex, and the
+ * outcome of a phase does not depend on how its tiles are spread over threads.
+ * <p>
+ * A critter whose tick reaches outside of its tile's region, e.g. by looking far ahead, is
+ * rolled back to its state before the tick and ticked again on the stepping thread once all
+ * phases are done. Everything shared by the whole world is handled there as well, in the
+ * order of the tiles: newborn critters get their colors and join the registry, deaths are
+ * counted and hexes are redrawn.
+ * <p>
+ * The result of a step is therefore determined by the state of the world alone, whatever the
+ * number of threads, but it differs from a serial step, which ticks critters in registry
+ * order across the whole world.
+ */
+final class ParallelStepper {
+
+    /**
+     * Number of hexes around a tile its critters may reach. Smell, the farthest reaching
+     * sensor, stays within MAX_SMELL_DISTANCE - 1 hexes.
+     */
+    static final int HALO = MAX_SMELL_DISTANCE;
+
+    // tiles of the same color are one tile apart, so regions must reach at most half a tile
+    private static final int TILE_COLUMNS = 2 * HALO, TILE_ROWS = 4 * HALO;
+    private static final int PHASES = 4;
+
+    /**
+     * Thrown when a critter reaches outside of the region of the tile it is ticked in. It
+     * carries no stack trace and is only used to unwind the tick.
+     */
+    static final class OutOfTile extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private OutOfTile() {
+            super("hex outside of the tile's region", null, false, false);
+        }
+    }
+
+    static final OutOfTile OUT_OF_TILE = new OutOfTile();
+
+    private static final ThreadLocal<Tile> CURRENT = new ThreadLocal<>();
+
+    private final World world;
+    private final HexStorage storage;
+    private final int threads;
+    private final ExecutorService executor;
+
+    private final Tile[] tiles;
+    // tileOf[index] is the tile holding the hex at index
+    private final int[] tileOf;
+    // owners[phase][index] is the tile of that phase whose region holds the hex, or -1
+    private final int[][] owners = new int[PHASES][];
+
+    private final ThreadLocal<SmellSearch> searches;
+
+    /**
+     * Create a stepper for world which uses the given number of threads; with one thread,
+     * tiles are ticked on the stepping thread
+     */
+    ParallelStepper(World world, HexStorage storage, int threads) {
+        this.world = world;
+        this.storage = storage;
+        this.threads = threads;
+        executor = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "world-step");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        searches = ThreadLocal.withInitial(() -> new SmellSearch(storage));
+
+        int across = (storage.getWidth() + TILE_COLUMNS - 1) / TILE_COLUMNS;
+        int down = (storage.getHeight() + TILE_ROWS - 1) / TILE_ROWS;
+        tiles = new Tile[across * down];
+        for (int phase = 0; phase < PHASES; phase++) {
+            owners[phase] = new int[storage.size()];
+            Arrays.fill(owners[phase], -1);
+        }
+        for (int y = 0; y < down; y++) {
+            for (int x = 0; x < across; x++) {
+                Tile tile = new Tile(y * across + x, (y & 1) * 2 + (x & 1));
+                tiles[tile.id] = tile;
+                // the region reaches HALO columns, or twice as many rows, beyond the tile
+                int[] owner = owners[tile.phase];
+                for (int column = x * TILE_COLUMNS - HALO; column < (x + 1) * TILE_COLUMNS + HALO; column++)
+                    for (int row = y * TILE_ROWS - 2 * HALO; row < (y + 1) * TILE_ROWS + 2 * HALO; row++)
+                        if (storage.contains(column, row)) owner[storage.index(column, row)] = tile.id;
+            }
+        }
+        tileOf = new int[storage.size()];
+        for (int index = 0; index < storage.size(); index++)
+            // padding cells may lie one column beyond the last tile
+            tileOf[index] = storage.row(index) / TILE_ROWS * across + Math.min(storage.column(index) / TILE_COLUMNS, across - 1);
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Performs one step for the first count critters of registry
+     */
+    void step(List<Critter> registry, int count) {
+        for (Tile tile : tiles) tile.clear();
+        for (int i = 0; i < count; i++) {
+            Critter critter = registry.get(i);
+            if (critter.isAlive()) tiles[tileOf[critter.getHexIndex()]].critters.add(critter);
+        }
+
+        // the storage cannot keep track of concurrent changes; it catches up after the phases
+        storage.suspendTracking();
+        try {
+            for (int phase = 0; phase < PHASES; phase++) {
+                List<Tile> phaseTiles = new ArrayList<>();
+                for (Tile tile : tiles)
+                    if (tile.phase == phase && !tile.critters.isEmpty()) phaseTiles.add(tile);
+                runPhase(phaseTiles);
+            }
+        } finally {
+            storage.resumeTracking();
+        }
+
+        for (Tile tile : tiles) {
+            for (Critter child : tile.births) world.registerCritter(child);
+            world.countDeaths(tile.deaths);
+            for (int index : tile.redraws) world.updateHex(index);
+        }
+        for (Tile tile : tiles)
+            for (Critter critter : tile.deferred)
+                if (critter.isAlive()) critter.tick();
+    }
+
+    private void runPhase(List<Tile> phaseTiles) {
+        if (executor == null) {
+            for (Tile tile : phaseTiles) tile.call();
+            return;
+        }
+        try {
+            for (Future<Void> future : executor.invokeAll(phaseTiles)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while stepping", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops the threads of this stepper
+     */
+    void shutdown() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    /**
+     * @return the tile being ticked on the current thread, or null if the thread is not
+     * ticking a tile
+     */
+    static Tile current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Aborts the current tick unless the hex at index is in the region of the tile being
+     * ticked on the current thread
+     */
+    static void claim(int index) {
+        Tile tile = CURRENT.get();
+        if (tile != null && index >= 0 && !tile.owns(index)) throw OUT_OF_TILE;
+    }
+
+    /**
+     * A tile and the effects of its critters' ticks that are applied after all phases
+     */
+    final class Tile implements Callable<Void> {
+        final int id;
+        final int phase;
+
+        final List<Critter> critters = new ArrayList<>();
+        final List<Critter> deferred = new ArrayList<>();
+        final List<Critter> births = new ArrayList<>();
+        final List<Integer> redraws = new ArrayList<>();
+        int deaths = 0;
+
+        private final Critter.Checkpoint checkpoint = new Critter.Checkpoint();
+        private SmellSearch search;
+
+        Tile(int id, int phase) {
+            this.id = id;
+            this.phase = phase;
+        }
+
+        boolean owns(int index) {
+            return owners[phase][index] == id;
+        }
+
+        /**
+         * @return the search engine of the thread ticking this tile, confined to its region
+         */
+        SmellSearch search() {
+            return search;
+        }
+
+        @Override
+        public Void call() {
+            CURRENT.set(this);
+            search = searches.get();
+            search.confine(owners[phase], id);
+            try {
+                for (Critter critter : critters) {
+                    if (!critter.isAlive()) continue;
+                    checkpoint.save(critter);
+                    try {
+                        critter.tick();
+                    } catch (OutOfTile e) {
+                        checkpoint.restore(critter);
+                        deferred.add(critter);
+                    }
+                }
+            } finally {
+                search.confine(null, -1);
+                search = null;
+                CURRENT.remove();
+            }
+            return null;
+        }
+
+        void clear() {
+            critters.clear();
+            deferred.clear();
+            births.clear();
+            redraws.clear();
+            deaths = 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package simulation;
+
+import ast.ProgramImpl;
+import cms.util.maybe.Maybe;
+import simulation.vm.Batch;
+import simulation.vm.Bytecode;
+import simulation.vm.CompiledProgram;
+import simulation.vm.Compiler;
+import simulation.vm.Jit;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The programs of the critters of a world, so that critters with the same genome share one
+ * program and one compiled form of it, however they came by it. A genome stays in the table
+ * only while some critter holds it.
+ */
+final class ProgramTable {
+
+    // genomes by the structural hash of their program, those with the same hash together;
+    // an entry goes once its genome is collected
+    private final Map<Integer, List<Entry>> genomes = new HashMap<>();
+    private final ReferenceQueue<Genome> collected = new ReferenceQueue<>();
+
+    /**
+     * @return the genome with the same program as program, which becomes the genome's
+     * program if there is none yet
+     */
+    synchronized Genome intern(ProgramImpl program) {
+        for (Reference<? extends Genome> gone; (gone = collected.poll()) != null; ) {
+            Entry entry = (Entry) gone;
+            List<Entry> same = genomes.get(entry.hash);
+            if (same != null && same.remove(entry) && same.isEmpty()) genomes.remove(entry.hash);
+        }
+        int hash = program.structuralHash();
+        List<Entry> same = genomes.computeIfAbsent(hash, h -> new ArrayList<>(1));
+        for (Entry entry : same) {
+            Genome genome = entry.get();
+            // programs with the same hash are only compared when they collide
+            if (genome != null && genome.program.sameStructure(program)) return genome;
+        }
+        Genome genome = new Genome(program);
+        same.add(new Entry(genome, hash, collected));
+        return genome;
+    }
+
+    /**
+     * A program, shared by every critter that runs it, and its compiled forms
+     */
+    static final class Genome {
+
+        private final ProgramImpl program;
+        // compiled as it is, and with its conditions reordered
+        private Bytecode bytecode, reordered;
+        // translated from either, or null until it is
+        private Maybe<CompiledProgram> translation, reorderedTranslation;
+        private Batch batch;
+        // turns critters interpreted the program for, and its compiled forms once it is hot;
+        // see TieredExecution
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicBoolean promoting = new AtomicBoolean();
+        private volatile Promotion promoted;
+
+        Genome(ProgramImpl program) {
+            this.program = program;
+        }
+
+        ProgramImpl program() {
+            return program;
+        }
+
+        /**
+         * @return the program compiled, see {@link Compiler#compile(ProgramImpl, boolean)}
+         */
+        synchronized Bytecode compiled(boolean reorder) {
+            if (reorder) {
+                if (reordered == null) reordered = Compiler.compile(program, true);
+                return reordered;
+            }
+            if (bytecode == null) bytecode = Compiler.compile(program, false);
+            return bytecode;
+        }
+
+        /**
+         * @return the program compiled and translated to a JVM class, see {@link Jit#compile},
+         * which the genome keeps for as long as critters hold it
+         */
+        synchronized Maybe<CompiledProgram> translated(boolean reorder) {
+            if (reorder) {
+                if (reorderedTranslation == null) reorderedTranslation = Jit.compile(compiled(true));
+                return reorderedTranslation;
+            }
+            if (translation == null) translation = Jit.compile(compiled(false));
+            return translation;
+        }
+
+        /**
+         * @return the translation of the program if it has been translated, see {@link
+         * #translated(boolean)}, or none
+         */
+        synchronized Maybe<CompiledProgram> translation(boolean reorder) {
+            Maybe<CompiledProgram> translated = reorder ? reorderedTranslation : translation;
+            return translated == null ? Maybe.none() : translated;
+        }
+
+        /**
+         * @return the program's leading rules evaluated for many critters, see {@link Batch}
+         */
+        synchronized Batch batch() {
+            if (batch == null) batch = Batch.of(program);
+            return batch;
+        }
+
+        long countRun() {
+            return runs.incrementAndGet();
+        }
+
+        /**
+         * @return whether the program is yet to be compiled, which it now will be
+         */
+        boolean claimPromotion() {
+            return !promoting.get() && promoting.compareAndSet(false, true);
+        }
+
+        /**
+         * Compiles the program, and translates it as well if jit is set, for critters to
+         * pick up at the start of their next turn
+         */
+        void promote(boolean reorder, boolean jit) {
+            promoted = new Promotion(compiled(reorder), jit ? translated(reorder) : Maybe.none());
+        }
+
+        /**
+         * @return the compiled forms of the program, or null if it is not hot yet
+         */
+        Promotion promoted() {
+            return promoted;
+        }
+    }
+
+    /**
+     * The compiled forms of a hot program: its bytecode, and its translation if there is one
+     */
+    record Promotion(Bytecode bytecode, Maybe<CompiledProgram> translated) {
+    }
+
+    private static final class Entry extends WeakReference<Genome> {
+
+        private final int hash;
+
+        Entry(Genome genome, int hash, ReferenceQueue<Genome> queue) {
+            super(genome, queue);
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package simulation;
+
+import java.util.Arrays;
+
+import static model.Constants.DirectionConstants.DIR_AMOUNT;
+
+/**
+ * The sensor values a critter has read during one run of its program. Until the critter
+ * acts on the world, which ends the run, nothing else it senses can change, so its program
+ * may test the same sensor in every rule and every pass for the price of one reading. The
+ * critter itself can change, as its program may set its posture, so ahead[0], which reports
+ * the critter, is never kept.
+ * <p>
+ * Values are kept in slots: one per direction for nearby, one per distance for the first
+ * few distances ahead, of which the one for distance 0 stays unused, and one for smell. A
+ * slot holds a value only if it was stored since the last {@link #clear()}.
+ */
+final class SensorCache {
+
+    static final int NEARBY = 0;
+    static final int AHEAD = NEARBY + DIR_AMOUNT;
+    /** Distances ahead that are kept; farther ones are sensed every time */
+    static final int AHEAD_DISTANCES = 8;
+    static final int SMELL = AHEAD + AHEAD_DISTANCES;
+
+    private final int[] values = new int[SMELL + 1];
+    // a slot holds a value if its stamp is the current one
+    private final int[] stamps = new int[SMELL + 1];
+    private int stamp = 1;
+
+    boolean has(int slot) {
+        return stamps[slot] == stamp;
+    }
+
+    /**
+     * Requires: {@code has(slot)}
+     */
+    int get(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * @return value, now kept in slot
+     */
+    int put(int slot, int value) {
+        values[slot] = value;
+        stamps[slot] = stamp;
+        return value;
+    }
+
+    /**
+     * Forgets every value
+     */
+    void clear() {
+        if (++stamp == 0) {
+            // after the stamps wrap around, old stamps could become current again
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+}
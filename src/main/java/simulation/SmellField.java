@@ -0,0 +1,207 @@
+package simulation;
+
+import java.util.Arrays;
+
+import static model.Constants.DirectionConstants.DIR_AMOUNT;
+import static model.Constants.MAX_SMELL_DISTANCE;
+
+/**
+ * Distance field from all FOOD hexes of a world, shared by every critter's smell.
+ * <p>
+ * For every hex the field holds the length of the shortest path to the nearest FOOD hex
+ * that only crosses EMPTY hexes, as long as that length is at most {@link #LIMIT}. Longer
+ * paths, and hexes that are neither EMPTY nor FOOD, are {@link #FAR}. The field only
+ * depends on the types of the hexes, which the {@link HexStorage} reports through
+ * {@link #typeChanged}. Changed hexes are collected and the field is repaired lazily, the
+ * next time it is read, by recomputing the distances around them.
+ * <p>
+ * A smell only reaches food within {@code MAX_SMELL_DISTANCE - 1} hexes of the critter, so
+ * distances beyond {@code MAX_SMELL_DISTANCE - 2} from the critter's neighbors never matter.
+ */
+final class SmellField {
+
+    /**
+     * Largest distance the field keeps track of
+     */
+    static final int LIMIT = MAX_SMELL_DISTANCE - 2;
+
+    /**
+     * Distance of hexes farther than LIMIT from food, or that cannot be crossed
+     */
+    static final int FAR = Byte.MAX_VALUE;
+
+    // above this many changed hexes the whole field is recomputed instead of repaired
+    private final int maxDirty;
+
+    private final HexStorage storage;
+    private final byte[] distance;
+
+    private int[] dirty = new int[16];
+    private int dirtyCount = 0;
+    private boolean recomputeAll = true;
+
+    // hexes being recomputed are marked with the current generation
+    private final int[] region;
+    private int generation = 0;
+    private final int[] regionList;
+    private int regionSize;
+
+    private final int[][] buckets = new int[LIMIT + 1][16];
+    private final int[] bucketSize = new int[LIMIT + 1];
+
+    /**
+     * Create a field for the hexes of storage and start listening to their changes
+     */
+    SmellField(HexStorage storage) {
+        this.storage = storage;
+        distance = new byte[storage.size()];
+        region = new int[storage.size()];
+        regionList = new int[storage.size()];
+        // a ball of radius LIMIT holds 3 * LIMIT * (LIMIT + 1) + 1 hexes
+        maxDirty = storage.size() / (3 * LIMIT * (LIMIT + 1) + 1) / 2;
+        storage.setSmellField(this);
+    }
+
+    /**
+     * Called by the storage whenever the type of the hex at index changes
+     */
+    void typeChanged(int index, Hex.HexType oldType, Hex.HexType newType) {
+        if (recomputeAll || category(oldType) == category(newType)) return;
+        if (dirtyCount == maxDirty) {
+            recomputeAll = true;
+            dirtyCount = 0;
+            return;
+        }
+        if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        dirty[dirtyCount++] = index;
+    }
+
+    /**
+     * Discards all distances, for when changes were made without notifying the field. The
+     * field is recomputed when it is next read.
+     */
+    void invalidate() {
+        recomputeAll = true;
+        dirtyCount = 0;
+    }
+
+    /**
+     * @return the distance from the hex at index to the nearest food, or FAR
+     */
+    int distance(int index) {
+        update();
+        return distance[index];
+    }
+
+    /**
+     * @return the number of steps a smell starting on the hex at index needs to reach the
+     * nearest food, i.e. the BFS ring the food is found in, or FAR if that is more than
+     * {@code LIMIT + 1}
+     */
+    int foodRing(int index) {
+        update();
+        int ring = FAR;
+        for (int direction = 0; direction < DIR_AMOUNT; direction++) {
+            int neighbor = storage.neighbor(index, direction);
+            if (neighbor >= 0 && distance[neighbor] != FAR) ring = Math.min(ring, distance[neighbor] + 1);
+        }
+        return ring;
+    }
+
+    /**
+     * Repairs the field after changes; reading an up to date field does not change it
+     */
+    void update() {
+        if (recomputeAll) {
+            newRegion();
+            for (int index = 0; index < storage.size(); index++) addToRegion(index);
+            recompute();
+            recomputeAll = false;
+            dirtyCount = 0;
+        } else if (dirtyCount > 0) {
+            // a changed hex can only affect paths of at most LIMIT hexes that pass through it
+            newRegion();
+            for (int i = 0; i < dirtyCount; i++) addBall(dirty[i]);
+            recompute();
+            dirtyCount = 0;
+        }
+    }
+
+    private void newRegion() {
+        if (++generation == 0) {
+            Arrays.fill(region, 0);
+            generation = 1;
+        }
+        regionSize = 0;
+    }
+
+    private void addToRegion(int index) {
+        region[index] = generation;
+        regionList[regionSize++] = index;
+    }
+
+    // adds all hexes within LIMIT steps of center, regardless of their types
+    private void addBall(int center) {
+        int column = storage.column(center), row = storage.row(center);
+        for (int dc = -LIMIT; dc <= LIMIT; dc++) {
+            // (column + dc, row + dr) is |dc| + (|dr| - |dc|) / 2 steps away from the center
+            int span = 2 * LIMIT - Math.abs(dc);
+            for (int dr = -span; dr <= span; dr += 2) {
+                if (!storage.contains(column + dc, row + dr)) continue;
+                int index = storage.index(column + dc, row + dr);
+                if (region[index] != generation) addToRegion(index);
+            }
+        }
+    }
+
+    /*
+     * Recomputes the distances of all hexes in the region. Hexes outside of it keep their
+     * distances, which are correct, and serve as sources for the hexes next to them.
+     */
+    private void recompute() {
+        for (int i = 0; i < regionSize; i++) distance[regionList[i]] = FAR;
+
+        for (int i = 0; i < regionSize; i++) {
+            int index = regionList[i];
+            Hex.HexType type = storage.getType(index);
+            if (type == Hex.HexType.FOOD) {
+                lower(index, 0);
+            } else if (type == Hex.HexType.EMPTY) {
+                for (int direction = 0; direction < DIR_AMOUNT; direction++) {
+                    int neighbor = storage.neighbor(index, direction);
+                    if (neighbor >= 0 && region[neighbor] != generation && distance[neighbor] < LIMIT)
+                        lower(index, distance[neighbor] + 1);
+                }
+            }
+        }
+
+        for (int d = 0; d <= LIMIT; d++) {
+            for (int i = 0; i < bucketSize[d]; i++) {
+                int index = buckets[d][i];
+                if (distance[index] != d || d == LIMIT) continue;
+                for (int direction = 0; direction < DIR_AMOUNT; direction++) {
+                    int neighbor = storage.neighbor(index, direction);
+                    if (neighbor >= 0 && region[neighbor] == generation && storage.getType(neighbor) == Hex.HexType.EMPTY)
+                        lower(neighbor, d + 1);
+                }
+            }
+            bucketSize[d] = 0;
+        }
+    }
+
+    private void lower(int index, int d) {
+        if (d >= distance[index]) return;
+        distance[index] = (byte) d;
+        if (bucketSize[d] == buckets[d].length) buckets[d] = Arrays.copyOf(buckets[d], bucketSize[d] * 2);
+        buckets[d][bucketSize[d]++] = index;
+    }
+
+    // hexes are either food, can be crossed on the way to food, or block the way
+    private static int category(Hex.HexType type) {
+        return switch (type) {
+            case FOOD -> 0;
+            case EMPTY -> 1;
+            default -> 2;
+        };
+    }
+}
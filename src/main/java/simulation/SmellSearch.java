@@ -0,0 +1,158 @@
+package simulation;
+
+import java.util.Arrays;
+
+import static model.Constants.DirectionConstants.DIR_AMOUNT;
+
+/**
+ * The breadth first search behind a critter's smell, see {@link Critter#smell(int)}.
+ * <p>
+ * A search engine is owned by a world and reused for every smell, so a search does not
+ * allocate: the fringes are consecutive runs of one int queue, hexes are marked as visited
+ * by stamping them with the number of the current search, and the direction, turns and
+ * initial turn of every visited hex are packed into a single int. A search therefore costs
+ * time proportional to the number of hexes it visits. An engine must only be used by one
+ * thread at a time.
+ */
+final class SmellSearch {
+
+    // layout of the packed state of a visited hex
+    private static final int INITIAL_TURN_SHIFT = 3, LEVEL_SHIFT = 6, TURNS_SHIFT = 14;
+    private static final int MASK_3 = 0b111, MASK_8 = 0xff;
+
+    private final HexStorage storage;
+
+    private final int[] queue;
+    private final int[] visited;
+    private final int[] state;
+    private int search = 0;
+
+    // hexes the search may visit while a tile is stepped in parallel, see confine
+    private int[] owner;
+    private int ownerId;
+
+    SmellSearch(HexStorage storage) {
+        this.storage = storage;
+        queue = new int[storage.size()];
+        visited = new int[storage.size()];
+        state = new int[storage.size()];
+    }
+
+    /**
+     * Restricts the search to the hexes whose owner is id; reaching any other hex aborts the
+     * smell with {@link ParallelStepper#OUT_OF_TILE}. A null owner lifts the restriction.
+     */
+    void confine(int[] owner, int id) {
+        this.owner = owner;
+        ownerId = id;
+    }
+
+    /**
+     * @param start     index of the smelling critter's hex
+     * @param direction direction the critter is facing
+     * @param distance  number of fringes to search, at least MAX_SMELL_DISTANCE
+     * @param field     food distances to restrict the search to, or null to search all hexes
+     * @return the value of smell, as described in {@link Critter#smell(int)}
+     */
+    int smell(int start, int direction, int distance, SmellField field) {
+        int cost = 1_000_000;
+
+        int foodRing = field == null ? distance : field.foodRing(start);
+        if (field != null && foodRing >= distance) return cost;
+
+        if (++search == 0) {
+            Arrays.fill(visited, 0);
+            search = 1;
+        }
+
+        //fringe[0] holds the critter's hex
+        queue[0] = start;
+        visited[start] = search;
+        state[start] = pack(direction, 0, 0, 0);
+
+        int fringeStart = 0, fringeEnd = 1, tail = 1;
+        boolean foodFound = false;
+        int level = 1;
+        for (; level < distance && !foodFound; level++) {
+            for (int q = fringeStart; q < fringeEnd; q++) {
+                int current = queue[q];
+                int currentState = state[current];
+                int currentDirection = currentState & MASK_3;
+                for (int dir = 0; dir < DIR_AMOUNT; dir++) {
+                    int neighbor = storage.neighbor(current, dir);
+                    if (neighbor < 0 || visited[neighbor] == search) continue;
+                    if (owner != null && owner[neighbor] != ownerId) throw ParallelStepper.OUT_OF_TILE;
+                    //skip hexes that are not on a shortest path to the food
+                    if (field != null && level + field.distance(neighbor) > foodRing) continue;
+
+                    Hex.HexType type = storage.getType(neighbor);
+                    if (type != Hex.HexType.EMPTY && type != Hex.HexType.FOOD) continue;
+
+                    int turns = currentState >>> TURNS_SHIFT;
+                    int initialTurn = (currentState >>> INITIAL_TURN_SHIFT) & MASK_3;
+                    if (currentDirection != dir) {
+                        //store the initial turns the critter has to make to get to this hex
+                        if (level == 1) initialTurn = initialTurnDirection(currentDirection, dir);
+                        turns += turns(currentDirection, dir);
+                    }
+                    visited[neighbor] = search;
+                    state[neighbor] = pack(dir, initialTurn, level, turns);
+                    queue[tail++] = neighbor;
+                    //once food has been found, stop after this fringe
+                    if (type == Hex.HexType.FOOD) foodFound = true;
+                }
+            }
+            fringeStart = fringeEnd;
+            fringeEnd = tail;
+        }
+        if (!foodFound) return cost;
+
+        //every neighbor of a food hex in the previous fringe is a way to get to the food
+        int foodLevel = level - 1;
+        for (int q = fringeStart; q < fringeEnd; q++) {
+            int food = queue[q];
+            if (storage.getType(food) != Hex.HexType.FOOD) continue;
+            for (int dir = 0; dir < DIR_AMOUNT; dir++) {
+                int neighbor = storage.neighbor(food, dir);
+                if (neighbor < 0 || visited[neighbor] != search) continue;
+                int neighborState = state[neighbor];
+                if (((neighborState >>> LEVEL_SHIFT) & MASK_8) != foodLevel - 1) continue;
+
+                int foodDist = foodLevel - 1 + (neighborState >>> TURNS_SHIFT);
+                //the food lies in the opposite direction of the neighbor
+                if ((dir + DIR_AMOUNT / 2) % DIR_AMOUNT != (neighborState & MASK_3)) foodDist += 1;
+                int foodCost = foodDist * 100 + ((neighborState >>> INITIAL_TURN_SHIFT) & MASK_3);
+
+                if (foodCost < cost) cost = foodCost;
+            }
+        }
+        return cost;
+    }
+
+    private static int pack(int direction, int initialTurn, int level, int turns) {
+        return direction | initialTurn << INITIAL_TURN_SHIFT | level << LEVEL_SHIFT | turns << TURNS_SHIFT;
+    }
+
+    /**
+     * @return the direction, relative to currentDir, of the first turn from currentDir to targetDir
+     */
+    static int initialTurnDirection(int currentDir, int targetDir) {
+        int turns = 0;
+        boolean leftTurn = (currentDir - targetDir) > 0;
+        int dirDiff = Math.abs(currentDir - targetDir);
+
+        if (dirDiff > 3) leftTurn = !leftTurn;
+        else turns = dirDiff;
+
+        return leftTurn ? 6 - turns : turns;
+    }
+
+    /**
+     * @return the number of turns needed to face targetDir instead of currentDir
+     */
+    static int turns(int currentDir, int targetDir) {
+        int dirDiff = Math.abs(currentDir - targetDir);
+
+        return (dirDiff > 3) ? 6 - dirDiff : dirDiff;
+    }
+}
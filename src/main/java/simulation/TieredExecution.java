@@ -0,0 +1,115 @@
+package simulation;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the programs of a world in tiers, once enabled with
+ * {@link World#setEnableTieredExecution(boolean)}. Every genome starts out run by the
+ * {@link Interpreter}; once its critters have run it for the promotion threshold number of
+ * turns, it is compiled, and translated if the world uses the JIT, on a background thread.
+ * Each critter switches to the compiled form at the start of its first turn after it is
+ * ready. Every tier gives the same results, so when that happens does not matter.
+ * <p>
+ * Genomes that only live for a few turns, as most mutants do, are never compiled.
+ */
+public final class TieredExecution {
+
+    public static final int DEFAULT_PROMOTION_THRESHOLD = 1_000;
+
+    private volatile int promotionThreshold = DEFAULT_PROMOTION_THRESHOLD;
+
+    // genomes waiting to be compiled or being compiled, those that were, and how long that took
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder latency = new LongAdder();
+
+    // one thread, which goes away when there is nothing to compile
+    private final ThreadPoolExecutor compiler = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "world-compile");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Counts a turn in which genome was interpreted, and has it compiled once it is hot
+     *
+     * @param reorder whether conditions are reordered, see {@link World#setEnableConditionReordering}
+     * @param jit     whether the compiled program is translated as well
+     */
+    void ran(ProgramTable.Genome genome, boolean reorder, boolean jit) {
+        if (compiler.isShutdown() || genome.countRun() < promotionThreshold || !genome.claimPromotion()) return;
+        long queuedAt = System.nanoTime();
+        queued.incrementAndGet();
+        compiler.execute(() -> {
+            try {
+                genome.promote(reorder, jit);
+                latency.add(System.nanoTime() - queuedAt);
+                promotions.increment();
+            } finally {
+                queued.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Sets how many turns critters run a genome before it is compiled; genomes that have
+     * already been run that often are compiled the next time they run
+     */
+    public void setPromotionThreshold(int promotionThreshold) {
+        this.promotionThreshold = Math.max(promotionThreshold, 0);
+    }
+
+    public int getPromotionThreshold() {
+        return promotionThreshold;
+    }
+
+    /**
+     * @return the number of genomes waiting to be compiled, including the one being compiled
+     */
+    public int getCompileQueueLength() {
+        return queued.get();
+    }
+
+    /**
+     * @return the number of genomes compiled so far
+     */
+    public long getPromotions() {
+        return promotions.sum();
+    }
+
+    /**
+     * @return the average time from a genome becoming hot to its compiled form being ready,
+     * in milliseconds, or 0 if no genome has been compiled yet
+     */
+    public double getAverageCompileLatency() {
+        long promoted = promotions.sum();
+        return promoted == 0 ? 0 : latency.sum() / 1e6 / promoted;
+    }
+
+    /**
+     * Waits until every genome that is hot so far has been compiled
+     */
+    public void awaitCompiles() throws InterruptedException {
+        if (compiler.isShutdown()) return;
+        try {
+            // genomes are compiled one after the other, so this runs after every one queued
+            compiler.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops compiling: the genome being compiled is abandoned, and no genome is compiled
+     * from now on, so they all stay interpreted
+     */
+    void shutdown() {
+        compiler.shutdownNow();
+    }
+}
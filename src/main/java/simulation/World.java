@@ -1,37 +1,82 @@
 package simulation;
 
+import ast.ProgramImpl;
 import cms.util.maybe.Maybe;
 import console.Logger;
 import gui.DisplayController;
 import gui.Grid;
 import javafx.scene.paint.Color;
+import main.RandomStream;
 import main.Util;
 import model.ReadOnlyCritter;
 import model.ReadOnlyWorld;
+import model.StepMode;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 import static model.Constants.*;
 
 /**
  * Represents the game world.
+ * <p>
+ * The execution options, set with the {@code setEnable} methods other than
+ * {@link #setEnableManna}, only change how fast critter programs and senses are worked out:
+ * a world runs exactly the same with any of them on or off.
  */
 public class World implements ReadOnlyWorld {
 
-    private final Hex[][] hexes; // [row][column]
+    private final HexStorage storage;
+    // shared food distances for smell
+    private final SmellField smellField;
+    private final SmellSearch smellSearch;
+    // steps the world on several threads, or null to step serially
+    private ParallelStepper stepper;
+    private IntentStepper intentStepper;
     private final int width;
     private final int height;
 
-    private int steps = 0, stepVal, critterNumber = 0;
+    private int steps = 0;
+
+    /*
+     * Live critters in the order they entered the world. Dead critters stay in the list
+     * (flagged by Critter.isAlive) until more than half of the entries are dead, at which
+     * point the list is compacted, so removal is O(1) amortized.
+     */
+    private final List<Critter> critters = new ArrayList<>();
+    private int deadCritters = 0;
+    // the programs of the world's critters, one for every genome
+    private final ProgramTable programs = new ProgramTable();
+    // passes of critter programs skipped because they would have changed nothing
+    private final LongAdder skippedPasses = new LongAdder();
+    // fuel a critter may burn in a turn and all critters together in a step, 0 for no limit; see Critter#tick
+    private long fuelPerTick, fuelPerStep;
+    // critters that act in the current step, which share the fuel of the step
+    private int actingCritters;
 
     private final String worldName;
 
-    private boolean enableManna = true, enableForcedMutation;
+    /*
+     * All randomness of a run comes from the world's seed: the world draws its own decisions
+     * (placement, manna, colors) from random, and every critter it adopts gets a stream split
+     * off it, which the critter's offspring split their streams from in turn.
+     */
+    private final long seed;
+    private final RandomStream random;
+
+    private boolean enableManna = true, enableForcedMutation, enableSmellField = true, enableCompiledPrograms = true,
+            enableJit, enableSensorCache = true, enableConditionReordering, enableTieredExecution,
+            enableBatchEvaluation;
+    private final TieredExecution tieredExecution = new TieredExecution();
 
     private Grid gridAssociated;
     private final List<Color> critterColorspace;
+    private final int colorCount;
 
     private int colorIndex;
 
@@ -40,31 +85,50 @@ public class World implements ReadOnlyWorld {
     private ArrayList<Coordinate> insertedCordinates = new ArrayList<>();
 
     public World(String worldName, int width, int height, List<Critter> critters, List<Hex> rocks, List<Hex> foods) {
+        this(worldName, width, height, critters, rocks, foods, Util.newSeed());
+    }
+
+    /**
+     * Create a world whose runs are fully determined by seed
+     */
+    public World(String worldName, int width, int height, List<Critter> critters, List<Hex> rocks, List<Hex> foods, long seed) {
         this.worldName = worldName;
+        this.seed = seed;
+        random = new RandomStream(seed);
         this.width = width+4;
         this.height = height+2;
-        hexes = new Hex[this.height][this.width];
-        critterColorspace = generateColors( (int) (width * height * 0.02));
-        stepVal = Util.randomInt(Integer.MAX_VALUE);
-
-        for (int i = 0; i < hexes.length; i++)
-            for (int j = 0; j < hexes[i].length; j++)
-                hexes[i][j] = new Hex(j, i, Hex.HexType.EMPTY);
-
-        for (Hex rock : rocks) hexes[rock.getRow()][rock.getColumn()] = rock;
-        for (Hex food : foods) hexes[food.getRow()][food.getColumn()] = food;
-        for (Critter critter : critters) hexes[critter.getRow()][critter.getColumn()].setCritter(critter, getNewCritterColor());
-
-        for (Hex h : hexes[0]) h.setType(Hex.HexType.ROCK);
-        for (Hex h : hexes[1]) h.setType(Hex.HexType.ROCK);
+        storage = new HexStorage(this.width, this.height);
+        smellField = new SmellField(storage);
+        smellSearch = new SmellSearch(storage);
+        colorCount = Math.max(2, (int) (width * height * 0.02));
+        critterColorspace = generateColors(colorCount);
+
+        for (Hex rock : rocks) setHex(rock.getCoordinate(), rock);
+        for (Hex food : foods) setHex(food.getCoordinate(), food);
+        for (Critter critter : critters) {
+            int index = indexOf(critter.getColumn(), critter.getRow());
+            if (index < 0) continue;
+            critter.setColor(getNewCritterColor());
+            placeCritter(index, critter);
+        }
 
-        for (Hex[] h : hexes) {
-            h[0].setType(Hex.HexType.ROCK);
-            h[h.length-1].setType(Hex.HexType.ROCK);
+        for (int j = 0; j < this.width; j++) {
+            setRock(j, 0);
+            setRock(j, 1);
+            setRock(j, this.height-2);
+            setRock(j, this.height-3);
+        }
+        for (int i = 0; i < this.height; i++) {
+            setRock(0, i);
+            setRock(this.width-1, i);
         }
 
-        for (Hex h : hexes[hexes.length-2]) h.setType(Hex.HexType.ROCK);
-        for (Hex h : hexes[hexes.length-3]) h.setType(Hex.HexType.ROCK);
+        // critters placed on the border were overwritten by rock and never enter the world
+        for (Critter critter : critters) {
+            if (critter.getHexIndex() < 0 || storage.getCritter(critter.getHexIndex()) != critter) continue;
+            critter.setRandomStream(random.split());
+            this.critters.add(critter);
+        }
     }
 
     public World(String worldName, int width, int height, List<Hex> rocks, List<Hex> foods) {
@@ -72,69 +136,315 @@ public class World implements ReadOnlyWorld {
     }
 
     public World() {
-        this("a New World", WIDTH, HEIGHT, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        this(Util.newSeed());
+    }
+
+    /**
+     * Create a random world whose runs are fully determined by seed
+     */
+    public World(long seed) {
+        this("a New World", WIDTH, HEIGHT, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), seed);
 
         // Placing rocks
         for (int i = 0; i < 5; i++) {
-            Coordinate coordinate = generateValidCoordinate();
-            int rockColumn = coordinate.column();
-            int rockRow = coordinate.row();
-
-            while (hexes[rockRow][rockColumn].getType() == Hex.HexType.ROCK) {
-                coordinate = generateValidCoordinate();
-                rockColumn = coordinate.column();
-                rockRow = coordinate.row();
-            }
-            hexes[rockRow][rockColumn] = new Hex(rockColumn, rockRow, Hex.HexType.ROCK);
+            int index = randomEmptyHex();
+            if (index < 0) break;
+            storage.setType(index, Hex.HexType.ROCK);
         }
     }
 
-    public void insertCritter(Critter critter) {
-        Coordinate coordinate = generateValidCoordinate();
-
-        while (hexAt(coordinate).getType() != Hex.HexType.EMPTY) coordinate = generateValidCoordinate();
+    /**
+     * Adds critter to the world on a random empty hex, facing a random direction
+     *
+     * @return false if there is no empty hex left, in which case critter is not added
+     */
+    public boolean insertCritter(Critter critter) {
+        int index = randomEmptyHex();
+        if (index < 0) return false;
+
+        critter.setDirection(random.nextInt(DirectionConstants.DIR_AMOUNT));
+        critter.setRandomStream(random.split());
+        insertCritterAtIndex(critter, index);
+        insertedCordinates.add(new Coordinate(storage.column(index), storage.row(index)));
+        return true;
+    }
+
+    /**
+     * Adds n critters taken from source to the world like {@link #insertCritter(Critter)},
+     * until there is no empty hex left
+     *
+     * @return the number of critters that could not be added; no more critters than fit
+     * into the world are taken from source
+     */
+    public int insertCritters(Supplier<Critter> source, int n) {
+        for (int i = 0; i < n; i++) {
+            if (storage.emptyCells().size() == 0) return n - i;
+            insertCritter(source.get());
+        }
+        return 0;
+    }
 
-        insertCritterAtLocation(critter, coordinate.column(), coordinate.row());
-        insertedCordinates.add(coordinate);
+    // index of an EMPTY hex picked at random, or -1 if there is none
+    private int randomEmptyHex() {
+        HexSet empty = storage.emptyCells();
+        return empty.size() == 0 ? -1 : empty.get(random.nextInt(empty.size()));
     }
 
+    /**
+     * Adds critter, which was created outside of this world's run, to the world on the hex at
+     * (col, row) and gives it a random stream split off the world's
+     */
     public void insertCritterAtLocation(Critter critter, int col, int row) {
-        if (hexes[row][col].getType() == Hex.HexType.CRITTER) return;
-        critter.setLocation(col, row);
-        Color c = getNewCritterColor();
-        critter.setColor(c);
-        hexes[row][col].setCritter(critter);
-        critterNumber++;
+        critter.setRandomStream(random.split());
+        insertCritterAtIndex(critter, indexOf(col, row));
+    }
+
+    /**
+     * Adds critter to the world on the hex at index, unless index is -1 or the hex is
+     * already occupied by a critter
+     */
+    void insertCritterAtIndex(Critter critter, int index) {
+        claim(index);
+        if (index < 0 || storage.getType(index) == Hex.HexType.CRITTER) return;
+        ParallelStepper.Tile tile = currentTile();
+        placeCritter(index, critter);
+        // critters born in a parallel step are registered once all tiles are done
+        if (tile != null) tile.births.add(critter);
+        else registerCritter(critter);
+    }
+
+    /**
+     * Gives critter, which has been placed on its hex, a color and adds it to the critters
+     * acting in the following steps
+     */
+    void registerCritter(Critter critter) {
+        critter.setColor(getNewCritterColor());
+        critters.add(critter);
+    }
+
+    /**
+     * Moves critter from its hex to the hex at index, leaving its old hex empty
+     */
+    void moveCritter(Critter critter, int index) {
+        claim(index);
+        storage.setType(critter.getHexIndex(), Hex.HexType.EMPTY);
+        placeCritter(index, critter);
+    }
+
+    private void placeCritter(int index, Critter critter) {
+        storage.setCritter(index, critter);
+        critter.place(index, storage.column(index), storage.row(index));
+    }
+
+    /**
+     * Copies the contents of hex into the world's cell at coordinate
+     */
+    public void setHex(Coordinate coordinate, Hex hex) {
+        int index = indexOf(coordinate.column(), coordinate.row());
+        if (index < 0) return;
+        storage.setType(index, hex.getType());
+        storage.setFood(index, hex.getFoodValue());
+        if (hex.getCritter() != null) placeCritter(index, hex.getCritter());
     }
 
-    public void setHex(Coordinate coordinate, Hex hex) {
-        hexes[coordinate.row()][coordinate.column()] = hex;
+    private void setRock(int column, int row) {
+        int index = indexOf(column, row);
+        if (index < 0) return;
+        storage.setType(index, Hex.HexType.ROCK);
+        storage.setFood(index, 0);
     }
 
+    /**
+     * @return a view on the hex at (column, row), or an INVALID hex if it lies outside the world
+     */
     public Hex hexAt(int column, int row) {
-        return hexes[row][column];
+        return hexAtIndex(indexOf(column, row));
+    }
+
+    /**
+     * @return a view on the hex at index, or an INVALID hex if index is -1
+     */
+    Hex hexAtIndex(int index) {
+        if (index < 0) return new Hex(-1,-1, Hex.HexType.INVALID);
+        return new Hex(storage, index, storage.column(index), storage.row(index));
+    }
+
+    /**
+     * @return the index of the hex at (column, row), or -1 if it is not a valid hex of this world
+     */
+    int indexOf(int column, int row) {
+        return storage.contains(column, row) ? storage.index(column, row) : -1;
+    }
+
+    /**
+     * @return the index of the hex next to the hex at index in the given direction, or -1 if
+     * there is none
+     */
+    int neighbor(int index, int direction) {
+        return storage.neighbor(index, direction);
     }
 
     public Hex hexAt(Coordinate coordinate) {
-        if (coordinate.column() < 0 || coordinate.row() < 0 || coordinate.row() >= hexes.length || coordinate.column() >= hexes[coordinate.row()].length)
-            return new Hex(-1,-1, Hex.HexType.INVALID);
-        return hexes[coordinate.row()][coordinate.column()];
+        return hexAt(coordinate.column(), coordinate.row());
+    }
+
+    /*
+     * Index based access to the contents of a hex, used by critters to sense and act without
+     * creating Hex views. An index of -1 stands for a hex outside the world.
+     */
+
+    Hex.HexType typeAt(int index) {
+        claim(index);
+        return index < 0 ? Hex.HexType.INVALID : storage.getType(index);
+    }
+
+    Critter critterAt(int index) {
+        claim(index);
+        return index < 0 ? null : storage.getCritter(index);
+    }
+
+    int foodAt(int index) {
+        claim(index);
+        return index < 0 ? 0 : storage.getFood(index);
     }
 
+    /**
+     * Sets the food on the hex at index, which becomes EMPTY if no food is left and FOOD
+     * otherwise; see {@link Hex#setFoodValue(int)}
+     */
+    void setFoodAt(int index, int foodValue) {
+        claim(index);
+        storage.setFood(index, foodValue);
+        if (foodValue == 0) storage.setType(index, Hex.HexType.EMPTY);
+        if (foodValue > 0) storage.setType(index, Hex.HexType.FOOD);
+    }
+
+    void setTypeAt(int index, Hex.HexType type) {
+        claim(index);
+        storage.setType(index, type);
+    }
+
+    /**
+     * @return the contents of the hex at index as reported by nearby and ahead, see
+     * {@link Hex#evaluate(Critter)}. Hexes outside the world are reported as rock.
+     */
+    int contentsAt(int index, Critter observer) {
+        claim(index);
+        if (index < 0) return ROCK_VALUE;
+        return switch (storage.getType(index)) {
+            case CRITTER -> storage.getCritter(index).appearance(observer);
+            case FOOD -> -storage.getFood(index) - 1;
+            case ROCK -> ROCK_VALUE;
+            default -> 0;
+        };
+    }
+
+    // while a tile is stepped in parallel, its critters must stay within the tile's region
+    private void claim(int index) {
+        if (stepper != null) ParallelStepper.claim(index);
+    }
+
+    private ParallelStepper.Tile currentTile() {
+        return stepper == null ? null : ParallelStepper.current();
+    }
+
+    /**
+     * Advances the world by n steps. In every step each critter that is alive at the start of
+     * the step acts exactly once, in the order the critters entered the world (loaded critters
+     * first, then inserted, budded and mated critters by time of birth). Critters born during a
+     * step first act in the following step; critters killed during a step do not act again.
+     * Once all critters have acted, manna may fall.
+     * <p>
+     * The other step modes order the critters' actions differently, see
+     * {@link #setStepMode(StepMode, int)}.
+     */
     public void step(int n) {
         steps += n;
         for (int k = 0; k < n; k++) {
-            stepVal = Util.diffRandNum(stepVal, Integer.MAX_VALUE);
-            for (Hex[] hex : hexes)
-                for (Hex value : hex) { //stepVal ensures that critter executes once per step
-                    if (value.getCritter() != null && value.getCritter().getStepVal() != stepVal) {
-                        value.getCritter().setStepVal(stepVal);
-                        value.tryTickCritter();
-                    }
+            int count = critters.size();
+            int acting = getNumberOfAliveCritters();
+            actingCritters = acting;
+            if (stepper != null) {
+                stepper.step(critters, count);
+            } else if (intentStepper != null) {
+                intentStepper.step(critters, count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    Critter critter = critters.get(i);
+                    if (critter.isAlive()) critter.tick();
                 }
+            }
+            dropManna(acting);
+            if (deadCritters * 2 > critters.size()) {
+                critters.removeIf(critter -> !critter.isAlive());
+                deadCritters = 0;
+            }
         }
     }
 
+    /**
+     * Sets how the world is stepped, on how many threads. In the TILED mode, critters act
+     * tile by tile as described in {@link ParallelStepper}; in the INTENTS mode, they first
+     * decide on their actions and then carry them out, as described in {@link IntentStepper}.
+     * Either way, a run depends on the seed but not on the number of threads. The SERIAL
+     * mode, the default, always steps on the calling thread.
+     *
+     * @param threads number of threads, at least 1 unless mode is SERIAL
+     */
+    public void setStepMode(StepMode mode, int threads) {
+        if (mode != StepMode.SERIAL && threads < 1)
+            throw new IllegalArgumentException("cannot step on " + threads + " threads");
+        if (stepper != null) stepper.shutdown();
+        if (intentStepper != null) intentStepper.shutdown();
+        stepper = mode == StepMode.TILED ? new ParallelStepper(this, storage, threads) : null;
+        intentStepper = mode == StepMode.INTENTS ? new IntentStepper(this, storage, threads) : null;
+    }
+
+    /**
+     * Stops the threads the world steps and compiles programs on, which it holds until then.
+     * A world that is no longer needed should be shut down; it can still be stepped
+     * afterwards, serially.
+     */
+    public void shutdown() {
+        setStepMode(StepMode.SERIAL, 0);
+        tieredExecution.shutdown();
+    }
+
+    public StepMode getStepMode() {
+        if (stepper != null) return StepMode.TILED;
+        return intentStepper != null ? StepMode.INTENTS : StepMode.SERIAL;
+    }
+
+    /**
+     * Steps the world in the TILED mode on threads threads, or serially if threads is 0
+     */
+    public void setParallelism(int threads) {
+        setStepMode(threads == 0 ? StepMode.SERIAL : StepMode.TILED, threads);
+    }
+
+    /**
+     * @return the number of threads the world is stepped on, or 0 if it is stepped serially
+     */
+    public int getParallelism() {
+        if (stepper != null) return stepper.getThreads();
+        return intentStepper != null ? intentStepper.getThreads() : 0;
+    }
+
+    /**
+     * @return whether critters are deciding on their actions ahead of carrying them out,
+     * during which the world must not change
+     */
+    boolean isDeciding() {
+        return intentStepper != null && intentStepper.isDeciding();
+    }
+
+    /**
+     * @return the seed this world's randomness is drawn from
+     */
+    public long getSeed() {
+        return seed;
+    }
+
     public int getSteps() {
         return steps;
     }
@@ -142,11 +452,11 @@ public class World implements ReadOnlyWorld {
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        for (int i = hexes.length - 1; i >= 0; i--) {
-            for (int j = 0; j < hexes[i].length; j++) {
+        for (int i = height - 1; i >= 0; i--) {
+            for (int j = 0; j < width; j++) {
                 builder.append(" ");
 
-                if (Hex.isValidHexCoordinate(i, j)) builder.append(hexes[i][j].toString());
+                if (Hex.isValidHexCoordinate(j, i)) builder.append(hexAt(j, i).toString());
                 else builder.append(" ");
 
                 builder.append(" ");
@@ -161,48 +471,28 @@ public class World implements ReadOnlyWorld {
     }
 
     public int getNumberOfAliveCritters() {
-        return critterNumber;
+        return critters.size() - deadCritters;
     }
 
     @Override
     public Maybe<ReadOnlyCritter> getReadOnlyCritter(int c, int r) {
-        Hex h = this.hexAt(c, r);
-        if (h != null && h.getType() == Hex.HexType.CRITTER) return Maybe.from(h.getCritter());
-        return Maybe.none();
+        int index = indexOf(c, r);
+        if (index < 0) return Maybe.none();
+        return Maybe.from(storage.getCritter(index));
     }
 
     @Override
     public int getTerrainInfo(int c, int r) {
-        return switch (this.hexAt(c, r).getType()) {
-            case CRITTER:
-                yield (this.hexAt(c, r).getCritter()).getDirection() + 1;
-            case ROCK, INVALID:
-                yield -1;
-            case EMPTY:
-                yield 0;
-            case FOOD:
-                yield -(this.hexAt(c, r).getFoodValue() + 1);
+        int index = indexOf(c, r);
+        if (index < 0) return -1;
+        return switch (storage.getType(index)) {
+            case CRITTER -> storage.getCritter(index).getDirection() + 1;
+            case ROCK, INVALID -> -1;
+            case EMPTY -> 0;
+            case FOOD -> -(storage.getFood(index) + 1);
         };
     }
 
-    public static int getRandomOddNumber(int min, int max) {
-        if (min % 2 == 0) min++;  // Ensure min is odd
-        if (max % 2 == 0) max--;  // Ensure max is odd
-
-        return min + 2 * (int) (Math.random() * (((max - min) >> 1) + 1));
-    }
-
-    public static int getRandomEvenNumber(int min, int max) {
-        Random rand = new Random();
-        return min + rand.nextInt((max+1 - min) / 2) * 2;
-    }
-
-    private Coordinate generateValidCoordinate() {
-        return new Random().nextBoolean()
-          ? new Coordinate(getRandomOddNumber(0, width-1), getRandomOddNumber(0, height-1))
-          : new Coordinate(getRandomEvenNumber(0, width-1), getRandomEvenNumber(0, height-1));
-    }
-
     public int getWidth() {
         return width;
     }
@@ -211,34 +501,65 @@ public class World implements ReadOnlyWorld {
         return height;
     }
 
-    public Hex[][] getAllHexes() {
-        return hexes;
-    }
-
     public String getWorldName() {
         return worldName;
     }
 
+    /**
+     * Drops the manna of a step in which chances critters acted. Each of them gives manna a
+     * chance of 1/n to fall, n being the number of live critters (or certainty, for fewer
+     * than two), so on average manna falls about once per step. The number of times it falls
+     * is drawn at once, with a few random numbers per fall.
+     */
+    private void dropManna(int chances) {
+        if (!enableManna || chances == 0) return;
+        int alive = getNumberOfAliveCritters();
+        int falls = alive < 2 ? chances : countSuccesses(chances, 1.0 / alive);
+        for (int i = 0; i < falls; i++) addFood();
+    }
+
+    // number of successes in trials with probability p, found by skipping over the failures
+    private int countSuccesses(int trials, double p) {
+        double logFailure = Math.log1p(-p);
+        int successes = 0;
+        // the number of trials up to and including the next success is geometric
+        for (double trial = 0; ; successes++) {
+            trial += Math.floor(Math.log(1 - random.nextDouble()) / logFailure) + 1;
+            if (trial > trials) return successes;
+        }
+    }
+
+    /**
+     * Drops one batch of manna: MANNA_COUNT per 1,000 hexes EMPTY or FOOD hexes, picked at
+     * random, get MANNA_AMOUNT more food. Fewer hexes get food if there are not enough of them.
+     */
     public void addFood() {
-        if (!this.enableManna) return;
-        if (Util.randomInt(this.getNumberOfAliveCritters()) != 0) return; // 1/n
+        HexSet empty = storage.emptyCells(), foods = storage.foodCells();
         int hexCount = (int) Math.floor((MANNA_COUNT * getHeight() * getWidth()) / 1_000.0);
-        while (hexCount > 0) {
-            Coordinate c = generateValidCoordinate();
-            Hex cHex = this.hexAt(c);
-            while (cHex.getType() != Hex.HexType.FOOD && cHex.getType() != Hex.HexType.EMPTY) {
-                c = generateValidCoordinate();
-                cHex = this.hexAt(c);
-            }
-            cHex.setFoodValue(this.hexAt(c).getFoodValue() + MANNA_AMOUNT); //doesn't actually change?
-            Logger.info("Set " + cHex.getFoodValue() + " food at " + c  + "!", "World:addFood", Logger.FLAG_WORLD);
-            updateHex(c);
-            hexCount--;
+        for (; hexCount > 0 && empty.size() + foods.size() > 0; hexCount--) {
+            int pick = random.nextInt(empty.size() + foods.size());
+            int index = pick < empty.size() ? empty.get(pick) : foods.get(pick - empty.size());
+            int food = storage.getFood(index) + MANNA_AMOUNT;
+            storage.setFood(index, food);
+            storage.setType(index, Hex.HexType.FOOD);
+            if (Logger.isEnabled(Logger.FLAG_WORLD))
+                Logger.info("Set " + food + " food at (" + storage.column(index) + ", " + storage.row(index) + ")!", "World:addFood", Logger.FLAG_WORLD);
+            updateHex(index);
         }
     }
 
     public void updateHex(Coordinate coordinate) {
-        getGrid().updateHexagon(coordinate);
+        if (gridAssociated != null) gridAssociated.updateHexagon(coordinate);
+    }
+
+    /**
+     * Redraws the hex at index, if the world is displayed
+     */
+    void updateHex(int index) {
+        if (gridAssociated == null || index < 0) return;
+        ParallelStepper.Tile tile = currentTile();
+        if (tile != null) tile.redraws.add(index);
+        else gridAssociated.updateHexagon(new Coordinate(storage.column(index), storage.row(index)));
     }
 
     public Grid getGrid() {
@@ -249,13 +570,83 @@ public class World implements ReadOnlyWorld {
         this.gridAssociated = grid;
     }
 
-    protected void decrementCritterNumber() {
-        this.critterNumber--;
+    /**
+     * Removes a killed critter from the set of live critters. The registry entry itself is
+     * dropped lazily by {@link #step(int)}.
+     */
+    void removeCritter(Critter critter) {
+        ParallelStepper.Tile tile = currentTile();
+        if (tile != null) tile.deaths++;
+        else countDeaths(1);
+    }
+
+    /**
+     * Counts n more critters as dead
+     */
+    void countDeaths(int n) {
+        if (n == 0) return;
+        deadCritters += n;
         if (displayController != null) displayController.updateDashboard();
     }
 
+    /**
+     * @return the program critters of this world with the same program as program share,
+     * see {@link ProgramTable}
+     */
+    ProgramTable.Genome intern(ProgramImpl program) {
+        return programs.intern(program);
+    }
+
+    /**
+     * @return the number of different programs the live critters run
+     */
+    public int getDistinctGenomes() {
+        Set<ProgramImpl> genomes = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Critter critter : critters) if (critter.isAlive()) genomes.add(critter.program());
+        return genomes.size();
+    }
+
+    /**
+     * Counts n more passes of a critter program as skipped
+     */
+    void countSkippedPasses(int n) {
+        skippedPasses.add(n);
+    }
+
+    /**
+     * @return the number of passes critters skipped because they would have repeated a pass
+     * that neither acted nor changed anything, see {@link Critter#tick()}
+     */
+    public long getSkippedPasses() {
+        return skippedPasses.sum();
+    }
+
+    /**
+     * Limits the fuel critter programs may burn, see {@link Critter#tick()}: perTick in one
+     * turn of a critter, and perStep in one step of all critters together, which share it
+     * evenly. The budget is checked before each rule starts, and a critter that cannot pay
+     * for the next rule ends its turn with a wait. 0 means no limit; there is none by default.
+     */
+    public void setFuelBudgets(long perTick, long perStep) {
+        this.fuelPerTick = Math.max(perTick, 0);
+        this.fuelPerStep = Math.max(perStep, 0);
+    }
+
+    /**
+     * @return the fuel a critter may burn in its turn of the current step
+     */
+    long fuelBudget() {
+        long budget = fuelPerTick > 0 ? fuelPerTick : Long.MAX_VALUE;
+        // shared evenly, so the limit does not depend on which critter acts first
+        if (fuelPerStep > 0) budget = Math.min(budget, Math.max(fuelPerStep / Math.max(actingCritters, 1), 1));
+        return budget;
+    }
+
     public Color getNewCritterColor() {
-        colorIndex = Util.diffRandNum(colorIndex, critterColorspace.size());
+        // picking a different color needs at least two to pick from; start over once they run out
+        if (critterColorspace.size() < 2) critterColorspace.addAll(generateColors(colorCount));
+        int previous = colorIndex;
+        do colorIndex = random.nextInt(critterColorspace.size()); while (colorIndex == previous);
         return critterColorspace.remove(colorIndex);
     }
 
@@ -277,6 +668,114 @@ public class World implements ReadOnlyWorld {
         this.enableManna = enableManna;
     }
 
+    /**
+     * Sets whether smell is answered with the help of a food distance field shared by all
+     * critters. Without it, every smell searches the critter's surroundings on its own.
+     */
+    public void setEnableSmellField(boolean enableSmellField) {
+        this.enableSmellField = enableSmellField;
+    }
+
+    /**
+     * Sets whether critters run their programs compiled to bytecode, see
+     * {@link simulation.vm.Compiler}, or walk the syntax tree with an {@link Interpreter}.
+     */
+    public void setEnableCompiledPrograms(boolean enableCompiledPrograms) {
+        this.enableCompiledPrograms = enableCompiledPrograms;
+    }
+
+    boolean usesCompiledPrograms() {
+        return enableCompiledPrograms;
+    }
+
+    /**
+     * Sets whether critters run their programs translated to JVM classes, see
+     * {@link simulation.vm.Jit}. Only programs loaded from species definitions are
+     * translated; the mutated programs of offspring keep running as set by
+     * {@link #setEnableCompiledPrograms} unless they match a translated program.
+     */
+    public void setEnableJit(boolean enableJit) {
+        this.enableJit = enableJit;
+    }
+
+    boolean usesJit() {
+        return enableJit;
+    }
+
+    /**
+     * Sets whether, when stepping in the INTENTS mode, the rules that only read memory at the
+     * start of a program shared by many critters are evaluated for all of them at once; see
+     * {@link simulation.vm.Batch}. Other modes, and genomes few critters share, are evaluated
+     * critter by critter.
+     */
+    public void setEnableBatchEvaluation(boolean enableBatchEvaluation) {
+        this.enableBatchEvaluation = enableBatchEvaluation;
+    }
+
+    boolean usesBatchEvaluation() {
+        return enableBatchEvaluation;
+    }
+
+    /**
+     * Sets whether programs are interpreted until they are hot, and only then compiled, in
+     * the background; see {@link TieredExecution}.
+     */
+    public void setEnableTieredExecution(boolean enableTieredExecution) {
+        this.enableTieredExecution = enableTieredExecution;
+    }
+
+    boolean usesTieredExecution() {
+        return enableTieredExecution;
+    }
+
+    /**
+     * @return the tiers programs are run in, with their settings and metrics
+     */
+    public TieredExecution getTieredExecution() {
+        return tieredExecution;
+    }
+
+    /**
+     * Sets whether compiled programs test the cheap sides of and/or first, see
+     * {@link ast.Optimizer#reorder}. Only programs compiled afterwards are affected.
+     */
+    public void setEnableConditionReordering(boolean enableConditionReordering) {
+        this.enableConditionReordering = enableConditionReordering;
+    }
+
+    boolean reordersConditions() {
+        return enableConditionReordering;
+    }
+
+    /**
+     * Sets whether a critter remembers what it sensed during a turn until it acts, see
+     * {@link SensorCache}.
+     */
+    public void setEnableSensorCache(boolean enableSensorCache) {
+        this.enableSensorCache = enableSensorCache;
+    }
+
+    boolean usesSensorCache() {
+        return enableSensorCache;
+    }
+
+    /**
+     * @return the food distance field, or null if it is disabled
+     */
+    SmellField getSmellField() {
+        // the field does not follow the changes made while tiles are stepped in parallel
+        return enableSmellField && currentTile() == null ? smellField : null;
+    }
+
+    /**
+     * @return the search engine critters of this world smell with
+     */
+    SmellSearch getSmellSearch() {
+        ParallelStepper.Tile tile = currentTile();
+        if (tile != null) return tile.search();
+        return isDeciding() ? intentStepper.search() : smellSearch;
+    }
+
     public ArrayList<Coordinate> getInsertedCordinates() {
         return insertedCordinates;
     }
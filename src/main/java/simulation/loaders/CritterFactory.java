@@ -3,6 +3,8 @@ package simulation.loaders;
 import simulation.Critter;
 import simulation.World;
 
+import java.util.function.Supplier;
+
 public class CritterFactory {
 
     private CritterFactory() {
@@ -12,4 +14,14 @@ public class CritterFactory {
         CritterLoader loader = new CritterLoader(currentWorld, fileName);
         return loader.getCritter();
     }
+
+    /**
+     * Reads the critter file once and returns a supplier of new critters as described by it,
+     * for loading many critters of the same kind
+     */
+    public static Supplier<Critter> supplierFromFile(World currentWorld, String fileName) {
+        CritterLoader loader = new CritterLoader(currentWorld, fileName);
+        loader.readFile();
+        return loader::createCritter;
+    }
 }
\ No newline at end of file
@@ -75,6 +75,7 @@ public class CritterLoader extends AbstractLoader {
 
     public Critter createCritter() {
         Logger.info("New critter loaded " + this.species, "CritterLoader:createCritter", Logger.FLAG_CRITTER_LOADER);
+        // critters never change their program, so all critters of the species share it
         return new Critter(currentWorld, species, memsize, defense, offense, size, energy, posture, program);
     }
 
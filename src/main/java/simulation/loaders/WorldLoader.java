@@ -57,8 +57,8 @@ public class WorldLoader extends AbstractLoader {
     }
 
     public World createWorld() {
-        this.world = new World(worldName, width, height, critters, rocks, foods);
         readFile();
+        this.world = new World(worldName, width, height, critters, rocks, foods);
         for (Critter critter : critters) critter.setWorld(this.world);
         return world;
     }
@@ -0,0 +1,153 @@
+package simulation.vm;
+
+import ast.*;
+import cms.util.maybe.Maybe;
+import main.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Evaluates the rules a program starts with for many critters running it at once. Those
+ * rules, up to the first one whose condition reads a sensor, only depend on the critter's
+ * memory, so their conditions can be evaluated for all the critters together, one
+ * operation at a time over a lane of values per critter, in simple loops over int arrays
+ * that the JVM can vectorize.
+ * <p>
+ * The result is where each critter's first pass may start, see {@link #firstRules}: the
+ * rules before it do not fire, and as their conditions draw no random numbers and read no
+ * sensors, skipping them changes nothing.
+ */
+public final class Batch {
+
+    // simplified conditions of the leading rules, null for rules that never fire
+    private final Condition[] conditions;
+
+    private Batch(Condition[] conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * @return the batch for the rules program starts with
+     */
+    public static Batch of(ProgramImpl program) {
+        List<Condition> conditions = new ArrayList<>();
+        for (int i = 0; i < program.numRules(); i++) {
+            Maybe<Rule> rule = Optimizer.optimize(program.getRule(i));
+            Condition condition = rule.isPresent() ? (Condition) rule.orElse(null).nodeAt(1) : null;
+            if (condition != null && !readsOnlyMemory(condition)) break;
+            conditions.add(condition);
+            // no rule after one that always fires is ever tried
+            if (condition != null && Optimizer.constant(condition).isPresent()) break;
+        }
+        return new Batch(conditions.toArray(new Condition[0]));
+    }
+
+    /**
+     * @return the number of rules the program starts with that only read memory
+     */
+    public int rules() {
+        return conditions.length;
+    }
+
+    /**
+     * Finds, for each of the first n memories in mems, the first of the leading rules whose
+     * condition holds for it, or {@link #rules()} if none does
+     *
+     * @param first receives the rule for each memory
+     * @param lanes where the conditions are evaluated
+     */
+    public void firstRules(int[][] mems, int n, int[] first, Lanes lanes) {
+        Arrays.fill(first, 0, n, conditions.length);
+        int undecided = n;
+        for (int r = 0; r < conditions.length && undecided > 0; r++) {
+            if (conditions[r] == null) continue;
+            int[] holds = condition(conditions[r], mems, n, lanes, 0);
+            for (int i = 0; i < n; i++) {
+                if (holds[i] != 0 && first[i] == conditions.length) {
+                    first[i] = r;
+                    undecided--;
+                }
+            }
+        }
+    }
+
+    /**
+     * The lanes batches are evaluated in, one for each level of the conditions, which
+     * whoever evaluates batches keeps from step to step so they are only allocated once.
+     * Not safe to use from more than one thread at once.
+     */
+    public static final class Lanes {
+
+        private int[][] lanes = new int[0][];
+
+        // the lane of the given level, at least n long
+        int[] at(int level, int n) {
+            if (level >= lanes.length) lanes = Arrays.copyOf(lanes, level + 1);
+            if (lanes[level] == null || lanes[level].length < n) lanes[level] = new int[n];
+            return lanes[level];
+        }
+    }
+
+    // each node leaves its values in the lane of its level, and its right side uses the next one
+    private static int[] condition(Condition condition, int[][] mems, int n, Lanes lanes, int level) {
+        if (condition instanceof ConditionBinary binary) {
+            int[] a = condition((Condition) binary.nodeAt(1), mems, n, lanes, level);
+            int[] b = condition((Condition) binary.nodeAt(2), mems, n, lanes, level + 1);
+            if (binary.getOpr() == ConditionBinary.BinCondOperator.AND) for (int i = 0; i < n; i++) a[i] &= b[i];
+            else for (int i = 0; i < n; i++) a[i] |= b[i];
+            return a;
+        }
+        ConditionRelation relation = (ConditionRelation) condition;
+        int[] a = expr(relation.getLeft(), mems, n, lanes, level), b = expr(relation.getRight(), mems, n, lanes, level + 1);
+        switch (relation.getOpr()) {
+            case EQ -> { for (int i = 0; i < n; i++) a[i] = a[i] == b[i] ? 1 : 0; }
+            case NE -> { for (int i = 0; i < n; i++) a[i] = a[i] != b[i] ? 1 : 0; }
+            case LT -> { for (int i = 0; i < n; i++) a[i] = a[i] < b[i] ? 1 : 0; }
+            case LE -> { for (int i = 0; i < n; i++) a[i] = a[i] <= b[i] ? 1 : 0; }
+            case GT -> { for (int i = 0; i < n; i++) a[i] = a[i] > b[i] ? 1 : 0; }
+            case GE -> { for (int i = 0; i < n; i++) a[i] = a[i] >= b[i] ? 1 : 0; }
+        }
+        return a;
+    }
+
+    private static int[] expr(Expr expr, int[][] mems, int n, Lanes lanes, int level) {
+        int[] values;
+        if (expr instanceof ExprNum num) {
+            values = lanes.at(level, n);
+            Arrays.fill(values, 0, n, num.getVal());
+        } else if (expr instanceof ExprMem mem) {
+            if (mem.getIndex() instanceof ExprNum index) {
+                values = lanes.at(level, n);
+                for (int i = 0; i < n; i++) values[i] = Machine.read(mems[i], index.getVal());
+            } else {
+                values = expr(mem.getIndex(), mems, n, lanes, level);
+                for (int i = 0; i < n; i++) values[i] = Machine.read(mems[i], values[i]);
+            }
+        } else {
+            ExprBinary binary = (ExprBinary) expr;
+            values = expr(binary.getLeft(), mems, n, lanes, level);
+            int[] b = expr(binary.getRight(), mems, n, lanes, level + 1);
+            switch (binary.getOpr()) {
+                case PLUS -> { for (int i = 0; i < n; i++) values[i] += b[i]; }
+                case MINUS -> { for (int i = 0; i < n; i++) values[i] -= b[i]; }
+                case MUL -> { for (int i = 0; i < n; i++) values[i] *= b[i]; }
+                case DIV -> { for (int i = 0; i < n; i++) values[i] = b[i] == 0 ? 0 : Math.floorDiv(values[i], b[i]); }
+                case MOD -> { for (int i = 0; i < n; i++) values[i] = Util.properMod(values[i], b[i]); }
+            }
+        }
+        return values;
+    }
+
+    // whether condition is made of relations between memory, numbers and arithmetic only
+    private static boolean readsOnlyMemory(Node node) {
+        if (node instanceof ExprNum) return true;
+        if (node instanceof ExprMem mem) return readsOnlyMemory(mem.getIndex());
+        if (node instanceof ExprBinary binary) return readsOnlyMemory(binary.getLeft()) && readsOnlyMemory(binary.getRight());
+        if (node instanceof ConditionRelation relation)
+            return readsOnlyMemory(relation.getLeft()) && readsOnlyMemory(relation.getRight());
+        if (node instanceof ConditionBinary binary) return readsOnlyMemory(binary.nodeAt(1)) && readsOnlyMemory(binary.nodeAt(2));
+        return false;
+    }
+}
@@ -0,0 +1,137 @@
+package simulation.vm;
+
+import ast.Rule;
+
+/**
+ * A critter program compiled by {@link Compiler} into a flat stream of instructions for a
+ * {@link Machine}.
+ * <p>
+ * Every instruction is an opcode followed by its operands, all ints. Instructions take
+ * their arguments from the top of the machine's operand stack, the rightmost argument on
+ * top, and push their result. The rules of the program follow each other in the stream;
+ * a rule burns its fuel, evaluates its condition, jumps to the next rule if it is false,
+ * and otherwise executes its commands and ends the pass with {@link #FIRE}.
+ */
+public final class Bytecode {
+
+    /* values and arithmetic */
+
+    /** PUSH n: pushes n */
+    public static final int PUSH = 0;
+    /** MEM: replaces an index with the critter's memory at that index, or 0 if it is out of range */
+    public static final int MEM = 1;
+    /** MEM_K i: pushes the memory at the constant index i, or 0 if it is out of range */
+    public static final int MEM_K = 2;
+    public static final int ADD = 3;
+    public static final int SUB = 4;
+    public static final int MUL = 5;
+    /** DIV: floor division, which fails on a zero divisor like {@link Math#floorDiv(int, int)} */
+    public static final int DIV = 6;
+    /** MOD: modulus that is never negative and 0 for a zero divisor, see {@link main.Util#properMod} */
+    public static final int MOD = 7;
+
+    /* relations and conditions, which push 1 for true and 0 for false */
+
+    public static final int EQ = 8;
+    public static final int NE = 9;
+    public static final int LT = 10;
+    public static final int LE = 11;
+    public static final int GT = 12;
+    public static final int GE = 13;
+    public static final int AND = 14;
+    public static final int OR = 15;
+
+    /* sensors */
+
+    /** AHEAD: replaces a distance with the contents of the hex that far ahead */
+    public static final int AHEAD = 16;
+    /** AHEAD_K d: pushes the contents of the hex at the constant distance d ahead */
+    public static final int AHEAD_K = 17;
+    public static final int NEARBY = 18;
+    public static final int NEARBY_K = 19;
+    public static final int RANDOM = 20;
+    public static final int RANDOM_K = 21;
+    public static final int SMELL = 22;
+
+    /* control */
+
+    /** JUMP t: continues at t */
+    public static final int JUMP = 23;
+    /** JUMP_FALSE t: pops a value and continues at t if it is 0 */
+    public static final int JUMP_FALSE = 24;
+    /** JUMP_TRUE t: pops a value and continues at t if it is not 0 */
+    public static final int JUMP_TRUE = 25;
+
+    /* commands */
+
+    /** STORE: pops a value and an index and assigns the value to the memory at the index, if it is assignable */
+    public static final int STORE = 26;
+    /** STORE_K i: pops a value and assigns it to the memory at the constant index i */
+    public static final int STORE_K = 27;
+    /** ACT a: performs the action with ordinal a, see {@link ast.Cmd.CmdType} */
+    public static final int ACT = 28;
+    /** SERVE: pops an amount and serves that much energy, if it is not positive */
+    public static final int SERVE = 29;
+    /** FIRE r x: ends the pass as rule r, which has performed an action if x is 1 */
+    public static final int FIRE = 30;
+    /** HALT: ends the pass without any rule having fired */
+    public static final int HALT = 31;
+    /** FUEL n: burns n fuel for the rule starting here, or ends the pass if it cannot, see {@link Host#burn} */
+    public static final int FUEL = 32;
+
+    private final int[] code;
+    private final Rule[] rules;
+    // where the code of each rule starts, or the final HALT for rules that are never reached
+    private final int[] starts;
+    private final int maxStack;
+
+    Bytecode(int[] code, Rule[] rules, int[] starts, int maxStack) {
+        this.code = code;
+        this.rules = rules;
+        this.starts = starts;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * @return the instruction stream; must not be modified
+     */
+    int[] code() {
+        return code;
+    }
+
+    /**
+     * @return the rule with the given index, as passed to FIRE
+     */
+    public Rule rule(int index) {
+        return rules[index];
+    }
+
+    /**
+     * @return the number of rules of the program, including those left out
+     */
+    int numRules() {
+        return rules.length;
+    }
+
+    /**
+     * @return where a pass that skips the rules before the one with the given index starts,
+     * see {@link Machine#run(int)}
+     */
+    public int ruleStart(int index) {
+        return index < starts.length ? starts[index] : code.length - 1;
+    }
+
+    /**
+     * @return the deepest the operand stack gets while running the program
+     */
+    int maxStack() {
+        return maxStack;
+    }
+
+    /**
+     * @return the number of ints in the instruction stream
+     */
+    public int length() {
+        return code.length;
+    }
+}
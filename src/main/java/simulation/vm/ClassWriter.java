@@ -0,0 +1,164 @@
+package simulation.vm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class files {@link Jit} generates: a final class extending Object that
+ * implements one interface, with a no-argument constructor and methods whose code is
+ * given as raw JVM bytecode.
+ * <p>
+ * The class files have version 49, the last version without stack map frames, so the
+ * code can branch freely and is verified by type inference instead.
+ */
+final class ClassWriter {
+
+    private static final int VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+    private static final int UTF8 = 1, INTEGER = 3, CLASS = 7, FIELD = 9, METHOD = 10, INTERFACE_METHOD = 11,
+            NAME_AND_TYPE = 12;
+
+    // the constant pool, with the index of every constant already in it
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolSize = 1;
+
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private final DataOutputStream methodsOut = new DataOutputStream(methods);
+    private int methodCount = 0;
+
+    private final int thisClass, superClass, anInterface;
+
+    /**
+     * Create a writer for the class name, which implements anInterface; both are internal
+     * names like {@code simulation/vm/Host}
+     */
+    ClassWriter(String name, String anInterface) {
+        this.thisClass = classConstant(name);
+        this.superClass = classConstant("java/lang/Object");
+        this.anInterface = classConstant(anInterface);
+        // aload_0, invokespecial Object.<init>, return
+        int init = methodConstant("java/lang/Object", "<init>", "()V");
+        addMethod("<init>", "()V", new byte[]{0x2a, (byte) 0xb7, (byte) (init >> 8), (byte) init, (byte) 0xb1}, 1, 1);
+    }
+
+    /**
+     * Adds a public method with the code given
+     */
+    void addMethod(String name, String descriptor, byte[] code, int maxStack, int maxLocals) {
+        try {
+            methodsOut.writeShort(ACC_PUBLIC);
+            methodsOut.writeShort(utf8(name));
+            methodsOut.writeShort(utf8(descriptor));
+            methodsOut.writeShort(1);
+            methodsOut.writeShort(utf8("Code"));
+            methodsOut.writeInt(12 + code.length);
+            methodsOut.writeShort(maxStack);
+            methodsOut.writeShort(maxLocals);
+            methodsOut.writeInt(code.length);
+            methodsOut.write(code);
+            methodsOut.writeShort(0); // exception table
+            methodsOut.writeShort(0); // attributes
+            methodCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the class file
+     */
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(anInterface);
+            out.writeShort(0); // fields
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    int integerConstant(int value) {
+        return constant("I" + value, () -> {
+            poolOut.writeByte(INTEGER);
+            poolOut.writeInt(value);
+        });
+    }
+
+    int classConstant(String name) {
+        int utf8 = utf8(name);
+        return constant("C" + name, () -> {
+            poolOut.writeByte(CLASS);
+            poolOut.writeShort(utf8);
+        });
+    }
+
+    int fieldConstant(String owner, String name, String descriptor) {
+        return member(FIELD, owner, name, descriptor);
+    }
+
+    int methodConstant(String owner, String name, String descriptor) {
+        return member(METHOD, owner, name, descriptor);
+    }
+
+    int interfaceMethodConstant(String owner, String name, String descriptor) {
+        return member(INTERFACE_METHOD, owner, name, descriptor);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classConstant(owner);
+        int nameIndex = utf8(name), descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + " " + descriptor, () -> {
+            poolOut.writeByte(NAME_AND_TYPE);
+            poolOut.writeShort(nameIndex);
+            poolOut.writeShort(descriptorIndex);
+        });
+        return constant(tag + owner + "." + name + descriptor, () -> {
+            poolOut.writeByte(tag);
+            poolOut.writeShort(ownerIndex);
+            poolOut.writeShort(nameAndType);
+        });
+    }
+
+    private int utf8(String text) {
+        return constant("U" + text, () -> {
+            poolOut.writeByte(UTF8);
+            poolOut.writeUTF(text);
+        });
+    }
+
+    private int constant(String key, PoolEntry entry) {
+        Integer index = constants.get(key);
+        if (index != null) return index;
+        try {
+            entry.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        constants.put(key, poolSize);
+        return poolSize++;
+    }
+
+    private interface PoolEntry {
+        void write() throws IOException;
+    }
+}
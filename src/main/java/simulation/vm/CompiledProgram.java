@@ -0,0 +1,21 @@
+package simulation.vm;
+
+/**
+ * A critter program compiled to a JVM class by {@link Jit}.
+ */
+public interface CompiledProgram {
+
+    /** What {@link #run} returns when no rule fires */
+    int NO_RULE = -1;
+
+    /**
+     * Runs one pass of the program for host, skipping the rules before the one at index
+     * first, like {@link Machine#run(int)}, except that it does not tell the host which rule
+     * fired.
+     *
+     * @return {@link #NO_RULE}, also when the critter runs out of fuel, or the index of the
+     * rule that fired shifted left by one, with the lowest bit set if the rule performed an
+     * action
+     */
+    int run(Host host, int first);
+}
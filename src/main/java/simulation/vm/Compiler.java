@@ -0,0 +1,245 @@
+package simulation.vm;
+
+import ast.*;
+import cms.util.maybe.Maybe;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static simulation.vm.Bytecode.*;
+
+/**
+ * Compiles critter programs into {@link Bytecode}.
+ * <p>
+ * Rules are compiled as simplified by {@link Optimizer}: rules that never fire are left
+ * out, and so are the rules after one that always does, but the rules keep their indices,
+ * and those that never fire still burn their fuel, as the interpreter tries them.
+ * <p>
+ * The compiled program behaves exactly like {@link simulation.Interpreter} running the same
+ * program, including the random numbers it draws: the right side of and/or is skipped when
+ * the left side decides, unless it draws random numbers, both sides of every relation are
+ * evaluated, and a division evaluates its divisor once to check for zero and once more for
+ * the division itself. Memory indices, sensor
+ * arguments and division by numbers that are known when compiling get specialized
+ * instructions.
+ */
+public final class Compiler {
+
+    private int[] code = new int[64];
+    private int length = 0;
+    // operand stack depth at the current instruction, and the deepest it gets
+    private int depth = 0;
+    private int maxDepth = 0;
+    // whether conditions are reordered to test cheap sides first, see Optimizer#reorder
+    private final boolean reorder;
+
+    private Compiler(boolean reorder) {
+        this.reorder = reorder;
+    }
+
+    /**
+     * @return program compiled to bytecode, with the sides of its conditions reordered by
+     * {@link Optimizer#reorder} if reorder is set, which does not change what it does
+     */
+    public static Bytecode compile(ProgramImpl program, boolean reorder) {
+        Compiler compiler = new Compiler(reorder);
+        Rule[] rules = new Rule[program.numRules()];
+        int[] starts = new int[rules.length];
+        boolean reachable = true;
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = program.getRule(i);
+            // rules after one that always fires start at the final HALT
+            starts[i] = compiler.length;
+            if (!reachable) continue;
+            compiler.emit(FUEL, rules[i].size());
+            Maybe<Rule> optimized = Optimizer.optimize(rules[i]);
+            if (optimized.isPresent()) reachable = compiler.rule(optimized.orElse(null), i);
+        }
+        compiler.emit(HALT);
+        return new Bytecode(Arrays.copyOf(compiler.code, compiler.length), rules, starts, Math.max(1, compiler.maxDepth));
+    }
+
+    // compiles the simplified rule, returning whether rules after it can be reached, which
+    // they cannot if the rule always fires
+    private boolean rule(Rule rule, int index) {
+        Condition condition = (Condition) rule.nodeAt(1);
+        if (reorder) condition = Optimizer.reorder(condition);
+        boolean always = Optimizer.constant(condition).isPresent();
+        int skip = -1;
+        if (!always) {
+            condition(condition);
+            skip = jump(JUMP_FALSE, 1);
+        }
+        for (int c = 0; c < rule.cmdCnt(); c++) command(rule.getCommand(c));
+        // simplified rules end with their first command that is not an update, which ends the
+        // pass even if it did not act
+        boolean acted = rule.cmdCnt() > 0 && rule.getCommand(rule.cmdCnt() - 1).getType() != Cmd.CmdType.UPDATE;
+        emit(FIRE, index, acted ? 1 : 0);
+        if (always) return false;
+        patch(skip);
+        return true;
+    }
+
+    private void command(Cmd cmd) {
+        if (cmd instanceof CmdServe serve) {
+            expr(serve.getIndex());
+            op(SERVE, 1, 0);
+        } else if (cmd instanceof CmdUpdate update) {
+            if (update.getMemIndex() instanceof ExprNum index) {
+                expr(update.getValue());
+                op(STORE_K, 1, 0);
+                emit(index.getVal());
+            } else {
+                expr(update.getMemIndex());
+                expr(update.getValue());
+                op(STORE, 2, 0);
+            }
+        } else if (cmd.getType() != Cmd.CmdType.UPDATE) {
+            emit(ACT, cmd.getType().ordinal());
+        }
+    }
+
+    private void condition(Condition condition) {
+        if (condition instanceof ConditionBinary binary) {
+            boolean or = binary.getOpr() == ConditionBinary.BinCondOperator.OR;
+            Condition right = (Condition) binary.nodeAt(2);
+            condition((Condition) binary.nodeAt(1));
+            if (Optimizer.drawsRandom(right)) {
+                condition(right);
+                op(or ? OR : AND, 2, 1);
+                return;
+            }
+            // a left side that is true for or, or false for and, is the result
+            int decided = jump(or ? JUMP_TRUE : JUMP_FALSE, 1);
+            int base = depth;
+            condition(right);
+            int end = jump(JUMP, 0);
+            patch(decided);
+            depth = base;
+            push(or ? 1 : 0);
+            patch(end);
+        } else if (condition instanceof ConditionRelation relation) {
+            expr(relation.getLeft());
+            expr(relation.getRight());
+            op(switch (relation.getOpr()) {
+                case EQ -> EQ;
+                case NE -> NE;
+                case LT -> LT;
+                case LE -> LE;
+                case GT -> GT;
+                case GE -> GE;
+            }, 2, 1);
+        } else {
+            push(0);
+        }
+    }
+
+    private void expr(Expr expr) {
+        if (expr instanceof ExprBinary binary) {
+            if (binary.getOpr() == ExprBinary.BinExprOperator.DIV) {
+                divide(binary.getLeft(), binary.getRight());
+                return;
+            }
+            expr(binary.getLeft());
+            expr(binary.getRight());
+            op(switch (binary.getOpr()) {
+                case PLUS -> ADD;
+                case MINUS -> SUB;
+                case MUL -> MUL;
+                default -> MOD;
+            }, 2, 1);
+        } else if (expr instanceof ExprMem mem) {
+            if (mem.getIndex() instanceof ExprNum index) {
+                op(MEM_K, 0, 1);
+                emit(index.getVal());
+            } else {
+                expr(mem.getIndex());
+                op(MEM, 1, 1);
+            }
+        } else if (expr instanceof ExprNum num) {
+            push(num.getVal());
+        } else if (expr instanceof ExprSensor sensor) {
+            sensor(sensor);
+        } else {
+            push(0);
+        }
+    }
+
+    private void divide(Expr dividend, Expr divisor) {
+        if (divisor instanceof ExprNum num) {
+            if (num.getVal() == 0) {
+                push(0);
+            } else {
+                expr(dividend);
+                push(num.getVal());
+                op(DIV, 2, 1);
+            }
+            return;
+        }
+        // a zero divisor yields 0 without evaluating the dividend
+        expr(divisor);
+        int nonzero = jump(JUMP_TRUE, 1);
+        int base = depth;
+        push(0);
+        int end = jump(JUMP, 0);
+        patch(nonzero);
+        depth = base;
+        expr(dividend);
+        expr(divisor);
+        op(DIV, 2, 1);
+        patch(end);
+    }
+
+    private void sensor(ExprSensor sensor) {
+        if (sensor.getSensorType() == ExprSensor.SensorType.SMELL) {
+            op(SMELL, 0, 1);
+            return;
+        }
+        AtomicReference<Expr> index = new AtomicReference<>();
+        sensor.getIndex().thenDo(index::set);
+        int opcode = switch (sensor.getSensorType()) {
+            case AHEAD -> AHEAD;
+            case NEARBY -> NEARBY;
+            default -> RANDOM;
+        };
+        // a missing index counts as 0; the specialized instruction follows the general one
+        if (index.get() == null || index.get() instanceof ExprNum) {
+            int value = index.get() == null ? 0 : ((ExprNum) index.get()).getVal();
+            op(opcode + 1, 0, 1);
+            emit(value);
+        } else {
+            expr(index.get());
+            op(opcode, 1, 1);
+        }
+    }
+
+    private void push(int value) {
+        op(PUSH, 0, 1);
+        emit(value);
+    }
+
+    // emits an opcode that pops pops values and pushes pushes values
+    private void op(int opcode, int pops, int pushes) {
+        emit(opcode);
+        depth += pushes - pops;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    // emits a jump that pops pops values, returning where its target goes once it is known
+    private int jump(int opcode, int pops) {
+        op(opcode, pops, 0);
+        emit(-1);
+        return length - 1;
+    }
+
+    private void patch(int target) {
+        code[target] = length;
+    }
+
+    private void emit(int... words) {
+        for (int word : words) {
+            if (length == code.length) code = Arrays.copyOf(code, length * 2);
+            code[length++] = word;
+        }
+    }
+}
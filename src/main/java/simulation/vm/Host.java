@@ -0,0 +1,41 @@
+package simulation.vm;
+
+import ast.Cmd;
+import ast.Rule;
+
+/**
+ * The critter a {@link Machine} runs a program for: its memory, its senses and its actions.
+ */
+public interface Host {
+
+    /**
+     * @return the critter's memory, which the machine reads and assigns directly
+     */
+    int[] memory();
+
+    int ahead(int distance);
+
+    /**
+     * Burns fuel for the rule about to be tried, see simulation.Critter#tick
+     *
+     * @return whether the critter could afford it; if not, the pass ends without the rule
+     */
+    boolean burn(int fuel);
+
+    int nearby(int direction);
+
+    int smell();
+
+    int random(int n);
+
+    /**
+     * Performs the action of type, or records it to be performed later; amount is the energy
+     * to serve
+     */
+    void act(Cmd.CmdType type, int amount);
+
+    /**
+     * Called when rule, with the given index in the program, fires
+     */
+    void fired(Rule rule, int index);
+}
@@ -0,0 +1,260 @@
+package simulation.vm;
+
+import ast.Cmd;
+import cms.util.maybe.Maybe;
+import console.Logger;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+import static simulation.vm.Bytecode.*;
+
+/**
+ * Translates compiled critter programs into JVM classes, so the JIT compiler of the JVM can
+ * optimize each program on its own: constants end up in the code, and the calls to the
+ * sensors can be inlined.
+ * <p>
+ * Every {@link Bytecode} instruction becomes a short sequence of JVM instructions working on
+ * the JVM's operand stack the same way, so the generated program behaves exactly like a
+ * {@link Machine} running the bytecode. The classes are defined as hidden classes, which go
+ * as soon as the last critter running one does.
+ */
+public final class Jit {
+
+    private static final String HOST = "simulation/vm/Host", MACHINE = "simulation/vm/Machine",
+            ACTION = "ast/Cmd$CmdType";
+    private static final String[] ACTION_NAMES = Arrays.stream(Cmd.CmdType.values()).map(Enum::name)
+            .toArray(String[]::new);
+    // the largest method whose branches are sure to fit in the 16 bits the JVM gives them
+    private static final int MAX_CODE = Short.MAX_VALUE;
+
+    private Jit() {
+    }
+
+    /**
+     * @return program translated to a new JVM class, or none if the program is too large to
+     * translate. The class is unloaded once nothing refers to the result, so whoever shares
+     * the program keeps the result, see simulation.ProgramTable.
+     */
+    public static Maybe<CompiledProgram> compile(Bytecode program) {
+        ClassWriter writer = new ClassWriter("simulation/vm/JitProgram", "simulation/vm/CompiledProgram");
+        byte[] code = new Translation(writer, program).translate();
+        if (code.length > MAX_CODE) {
+            Logger.info("program too large to translate: " + code.length + " bytes", "Jit:compile", Logger.FLAG_INTERPRETER);
+            return Maybe.none();
+        }
+        writer.addMethod("run", "(L" + HOST + ";I)I", code, program.maxStack() + 3, 5);
+        try {
+            Class<?> defined = MethodHandles.lookup().defineHiddenClass(writer.toByteArray(), true).lookupClass();
+            return Maybe.some((CompiledProgram) defined.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("could not define a compiled program", e);
+        }
+    }
+
+    /**
+     * Translates one program. The run method keeps the host in local 1, the critter's memory
+     * in local 2, once it has switched on the rule to start at that comes in it, and uses
+     * locals 3 and 4 to reorder operands.
+     */
+    private static final class Translation {
+
+        private final ClassWriter writer;
+        private final Bytecode program;
+        private final int[] code;
+        private byte[] out = new byte[256];
+        private int length = 0;
+        // where each instruction of the bytecode starts in the translation
+        private final int[] starts;
+        // positions of the branches to instructions of the bytecode, and their targets
+        private int[] branches = new int[16], targets = new int[16];
+        private int branchCount = 0;
+
+        Translation(ClassWriter writer, Bytecode program) {
+            this.writer = writer;
+            this.program = program;
+            this.code = program.code();
+            this.starts = new int[code.length];
+        }
+
+        byte[] translate() {
+            emit(0x1c, 0x2b); // iload_2, aload_1
+            invokeInterface("memory", "()[I", 1);
+            emit(0x4d); // astore_2
+            int rules = program.numRules();
+            int tableswitch = length;
+            emit(0xaa);
+            while (length % 4 != 0) emit(0);
+            int table = length;
+            emit(new int[12 + 4 * (rules + 1)]); // default, low 0, high rules, and an offset for each
+            int pc = 0;
+            while (pc < code.length) {
+                starts[pc] = length;
+                int opcode = code[pc];
+                instruction(opcode, pc + 1 < code.length ? code[pc + 1] : 0, pc + 2 < code.length ? code[pc + 2] : 0);
+                pc += 1 + operands(opcode);
+            }
+            for (int i = 0; i < branchCount; i++) {
+                int offset = starts[targets[i]] - branches[i];
+                out[branches[i] + 1] = (byte) (offset >> 8);
+                out[branches[i] + 2] = (byte) offset;
+            }
+            // the first rule past the end, and any after it, start at the final HALT
+            writeInt(table, starts[program.ruleStart(rules)] - tableswitch);
+            writeInt(table + 8, rules);
+            for (int rule = 0; rule <= rules; rule++)
+                writeInt(table + 12 + 4 * rule, starts[program.ruleStart(rule)] - tableswitch);
+            return Arrays.copyOf(out, length);
+        }
+
+        private void instruction(int opcode, int a, int b) {
+            switch (opcode) {
+                case PUSH -> push(a);
+                case MEM -> {
+                    emit(0x2c, 0x5f); // aload_2, swap
+                    invokeStatic(MACHINE, "read", "([II)I");
+                }
+                case MEM_K -> {
+                    emit(0x2c);
+                    push(a);
+                    invokeStatic(MACHINE, "read", "([II)I");
+                }
+                case ADD -> emit(0x60);
+                case SUB -> emit(0x64);
+                case MUL -> emit(0x68);
+                case DIV -> invokeStatic("java/lang/Math", "floorDiv", "(II)I");
+                case MOD -> invokeStatic("main/Util", "properMod", "(II)I");
+                case EQ -> compare(0x9f);
+                case NE -> compare(0xa0);
+                case LT -> compare(0xa1);
+                case LE -> compare(0xa4);
+                case GT -> compare(0xa3);
+                case GE -> compare(0xa2);
+                case AND -> emit(0x7e);
+                case OR -> emit(0x80);
+                case AHEAD -> {
+                    emit(0x03); // iconst_0
+                    invokeStatic("java/lang/Math", "max", "(II)I");
+                    sense("ahead");
+                }
+                case AHEAD_K -> senseConstant("ahead", Math.max(a, 0));
+                case NEARBY -> sense("nearby");
+                case NEARBY_K -> senseConstant("nearby", a);
+                case RANDOM -> sense("random");
+                case RANDOM_K -> senseConstant("random", a);
+                case SMELL -> {
+                    emit(0x2b);
+                    invokeInterface("smell", "()I", 1);
+                }
+                case JUMP -> branch(0xa7, a);
+                case JUMP_FALSE -> branch(0x99, a);
+                case JUMP_TRUE -> branch(0x9a, a);
+                case STORE -> {
+                    emit(0x36, 4, 0x3e, 0x2c, 0x1d, 0x15, 4); // istore 4, istore_3, aload_2, iload_3, iload 4
+                    invokeStatic(MACHINE, "store", "([III)V");
+                }
+                case STORE_K -> {
+                    emit(0x36, 4, 0x2c); // istore 4, aload_2
+                    push(a);
+                    emit(0x15, 4);
+                    invokeStatic(MACHINE, "store", "([III)V");
+                }
+                case ACT -> {
+                    emit(0x2b);
+                    action(ACTION_NAMES[a]);
+                    emit(0x03);
+                    invokeInterface("act", "(L" + ACTION + ";I)V", 3);
+                }
+                case SERVE -> {
+                    emit(0x03);
+                    invokeStatic("java/lang/Math", "min", "(II)I");
+                    emit(0x36, 4, 0x2b); // istore 4, aload_1
+                    action("SERVE");
+                    emit(0x15, 4);
+                    invokeInterface("act", "(L" + ACTION + ";I)V", 3);
+                }
+                case FIRE -> {
+                    push(a << 1 | b);
+                    emit(0xac); // ireturn
+                }
+                case HALT -> emit(0x02, 0xac); // iconst_m1, ireturn
+                case FUEL -> {
+                    emit(0x2b);
+                    push(a);
+                    invokeInterface("burn", "(I)Z", 2);
+                    emit(0x9a, 0, 5, 0x02, 0xac); // ifne +5, iconst_m1, ireturn
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + opcode);
+            }
+        }
+
+        private static int operands(int opcode) {
+            return switch (opcode) {
+                case PUSH, MEM_K, AHEAD_K, NEARBY_K, RANDOM_K, JUMP, JUMP_FALSE, JUMP_TRUE, STORE_K, ACT, FUEL -> 1;
+                case FIRE -> 2;
+                default -> 0;
+            };
+        }
+
+        // replaces the two ints on top with 1 if the comparison holds and 0 otherwise
+        private void compare(int comparison) {
+            emit(comparison, 0, 7, 0x03, 0xa7, 0, 4, 0x04); // if_icmp<c> +7, iconst_0, goto +4, iconst_1
+        }
+
+        // replaces the int on top with what the sensor of the host returns for it
+        private void sense(String sensor) {
+            emit(0x2b, 0x5f); // aload_1, swap
+            invokeInterface(sensor, "(I)I", 2);
+        }
+
+        private void senseConstant(String sensor, int argument) {
+            emit(0x2b);
+            push(argument);
+            invokeInterface(sensor, "(I)I", 2);
+        }
+
+        private void action(String name) {
+            int field = writer.fieldConstant(ACTION, name, "L" + ACTION + ";");
+            emit(0xb2, field >> 8, field); // getstatic
+        }
+
+        private void push(int value) {
+            if (value >= -1 && value <= 5) emit(0x03 + value); // iconst_<value>
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) emit(0x10, value); // bipush
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) emit(0x11, value >> 8, value); // sipush
+            else {
+                int constant = writer.integerConstant(value);
+                emit(0x13, constant >> 8, constant); // ldc_w
+            }
+        }
+
+        private void branch(int opcode, int target) {
+            if (branchCount == branches.length) {
+                branches = Arrays.copyOf(branches, branchCount * 2);
+                targets = Arrays.copyOf(targets, branchCount * 2);
+            }
+            branches[branchCount] = length;
+            targets[branchCount++] = target;
+            emit(opcode, 0, 0);
+        }
+
+        private void invokeStatic(String owner, String name, String descriptor) {
+            int method = writer.methodConstant(owner, name, descriptor);
+            emit(0xb8, method >> 8, method);
+        }
+
+        private void invokeInterface(String name, String descriptor, int argumentSlots) {
+            int method = writer.interfaceMethodConstant(HOST, name, descriptor);
+            emit(0xb9, method >> 8, method, argumentSlots, 0);
+        }
+
+        private void writeInt(int at, int value) {
+            for (int i = 0; i < 4; i++) out[at + i] = (byte) (value >> 24 - 8 * i);
+        }
+
+        private void emit(int... bytes) {
+            if (length + bytes.length > out.length) out = Arrays.copyOf(out, Math.max(out.length * 2, length + bytes.length));
+            for (int b : bytes) out[length++] = (byte) b;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package simulation.vm;
+
+import ast.Cmd;
+import main.Util;
+
+import static model.Constants.MemoryConstants.POSTURE;
+import static simulation.vm.Bytecode.*;
+
+/**
+ * Runs a critter program compiled to {@link Bytecode} for one critter.
+ * <p>
+ * A machine keeps its operand stack between passes, so it is not safe to run from more
+ * than one thread at once.
+ */
+public final class Machine {
+
+    private static final Cmd.CmdType[] ACTIONS = Cmd.CmdType.values();
+
+    private final Bytecode program;
+    private final Host host;
+    private final int[] stack;
+
+    public Machine(Bytecode program, Host host) {
+        this.program = program;
+        this.host = host;
+        this.stack = new int[program.maxStack()];
+    }
+
+    /**
+     * Runs one pass of the program: finds the first rule whose condition holds and executes
+     * its commands, like {@link simulation.Interpreter#run()}. A pass the critter runs out
+     * of fuel in ends where it does, see {@link Host#burn}.
+     *
+     * @return whether the rule that fired performed an action
+     */
+    public boolean run() {
+        return run(0);
+    }
+
+    /**
+     * Runs one pass of the program like {@link #run()}, starting at pc; see
+     * {@link Bytecode#ruleStart(int)}
+     */
+    public boolean run(int pc) {
+        final int[] code = program.code();
+        final int[] stack = this.stack;
+        final int[] mem = host.memory();
+        int sp = 0;
+        while (true) {
+            switch (code[pc++]) {
+                case PUSH -> stack[sp++] = code[pc++];
+                case MEM -> stack[sp - 1] = read(mem, stack[sp - 1]);
+                case MEM_K -> stack[sp++] = read(mem, code[pc++]);
+                case ADD -> { sp--; stack[sp - 1] += stack[sp]; }
+                case SUB -> { sp--; stack[sp - 1] -= stack[sp]; }
+                case MUL -> { sp--; stack[sp - 1] *= stack[sp]; }
+                case DIV -> { sp--; stack[sp - 1] = Math.floorDiv(stack[sp - 1], stack[sp]); }
+                case MOD -> { sp--; stack[sp - 1] = Util.properMod(stack[sp - 1], stack[sp]); }
+                case EQ -> { sp--; stack[sp - 1] = stack[sp - 1] == stack[sp] ? 1 : 0; }
+                case NE -> { sp--; stack[sp - 1] = stack[sp - 1] != stack[sp] ? 1 : 0; }
+                case LT -> { sp--; stack[sp - 1] = stack[sp - 1] < stack[sp] ? 1 : 0; }
+                case LE -> { sp--; stack[sp - 1] = stack[sp - 1] <= stack[sp] ? 1 : 0; }
+                case GT -> { sp--; stack[sp - 1] = stack[sp - 1] > stack[sp] ? 1 : 0; }
+                case GE -> { sp--; stack[sp - 1] = stack[sp - 1] >= stack[sp] ? 1 : 0; }
+                case AND -> { sp--; stack[sp - 1] &= stack[sp]; }
+                case OR -> { sp--; stack[sp - 1] |= stack[sp]; }
+                case AHEAD -> stack[sp - 1] = host.ahead(Math.max(stack[sp - 1], 0));
+                case AHEAD_K -> stack[sp++] = host.ahead(Math.max(code[pc++], 0));
+                case NEARBY -> stack[sp - 1] = host.nearby(stack[sp - 1]);
+                case NEARBY_K -> stack[sp++] = host.nearby(code[pc++]);
+                case RANDOM -> stack[sp - 1] = host.random(stack[sp - 1]);
+                case RANDOM_K -> stack[sp++] = host.random(code[pc++]);
+                case SMELL -> stack[sp++] = host.smell();
+                case JUMP -> pc = code[pc];
+                case JUMP_FALSE -> pc = stack[--sp] == 0 ? code[pc] : pc + 1;
+                case JUMP_TRUE -> pc = stack[--sp] != 0 ? code[pc] : pc + 1;
+                case STORE -> {
+                    sp -= 2;
+                    store(mem, stack[sp], stack[sp + 1]);
+                }
+                case STORE_K -> store(mem, code[pc++], stack[--sp]);
+                case ACT -> host.act(ACTIONS[code[pc++]], 0);
+                case SERVE -> host.act(Cmd.CmdType.SERVE, Math.min(stack[--sp], 0));
+                case FIRE -> {
+                    int rule = code[pc];
+                    host.fired(program.rule(rule), rule);
+                    return code[pc + 1] == 1;
+                }
+                case HALT -> {
+                    return false;
+                }
+                case FUEL -> {
+                    if (!host.burn(code[pc++])) return false;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + code[pc - 1] + " at " + (pc - 1));
+            }
+        }
+    }
+
+    // also called by the classes Jit generates
+    static int read(int[] mem, int index) {
+        return index < 0 || index >= mem.length ? 0 : mem[index];
+    }
+
+    static void store(int[] mem, int index, int value) {
+        if (index < POSTURE || index >= mem.length) return; //none of the values before posture can be assigned directly
+        if (index == POSTURE) value = Math.max(0, Math.min(value, 99));
+        mem[index] = value;
+    }
+}
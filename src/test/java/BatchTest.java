@@ -0,0 +1,111 @@
+import ast.Cmd;
+import ast.ProgramImpl;
+import ast.Rule;
+import exceptions.SyntaxError;
+import model.Constants;
+import org.junit.jupiter.api.Test;
+import parse.ParserFactory;
+import simulation.vm.Batch;
+import simulation.vm.Bytecode;
+import simulation.vm.CompiledProgram;
+import simulation.vm.Compiler;
+import simulation.vm.Host;
+import simulation.vm.Jit;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class contains tests for the evaluation of the rules programs start with for many
+ * critters at once, and for starting a pass at the rule it finds.
+ */
+public class BatchTest {
+
+    @Test
+    public void testEachMemoryStartsAtTheFirstRuleThatHolds() throws SyntaxError {
+        // the rules up to the one reading ahead only read memory
+        Batch batch = Batch.of(parse("mem[3] = 1 --> wait; mem[4] > 2 and mem[3] != 0 --> eat; 2 < 1 --> grow;"
+                + " mem[5] = 7 --> left; ahead[1] = 0 --> forward; 1 = 1 --> wait;"));
+        assertEquals(4, batch.rules());
+        int[][] mems = new int[5][Constants.MIN_MEMORY];
+        mems[0][3] = 1;
+        mems[1][3] = 2;
+        mems[1][4] = 5;
+        mems[2][5] = 7;
+        mems[3][4] = 5; // the second rule also needs mem[3]
+        int[] first = new int[mems.length];
+        Batch.Lanes lanes = new Batch.Lanes();
+        batch.firstRules(mems, mems.length, first, lanes);
+        assertArrayEquals(new int[]{0, 1, 3, 4, 4}, first);
+
+        // the lanes are reused for fewer memories, and for deeper conditions
+        Batch deeper = Batch.of(parse("mem[3] + mem[4] * (mem[5] - 1) = 11 and mem[mem[6]] > 0 --> wait;"));
+        int[][] two = new int[2][Constants.MIN_MEMORY];
+        two[0][3] = 1;
+        two[0][4] = 2;
+        two[0][5] = 6;
+        two[0][6] = 3;
+        two[1][3] = 11;
+        deeper.firstRules(two, two.length, first, lanes);
+        assertArrayEquals(new int[]{0, 1}, new int[]{first[0], first[1]});
+    }
+
+    @Test
+    public void testTranslatedProgramsStartAtTheGivenRule() throws SyntaxError {
+        Bytecode bytecode = Compiler.compile(parse("mem[3] = 0 --> wait; 1 > 2 --> bud; mem[4] = 0 --> eat;"
+                + " 1 = 1 --> grow;"), false);
+        CompiledProgram translated = Jit.compile(bytecode).orElse(null);
+        Host host = new Host() {
+            private final int[] mem = new int[Constants.MIN_MEMORY];
+
+            @Override
+            public int[] memory() {
+                return mem;
+            }
+
+            @Override
+            public int ahead(int distance) {
+                return 0;
+            }
+
+            @Override
+            public boolean burn(int fuel) {
+                return true;
+            }
+
+            @Override
+            public int nearby(int direction) {
+                return 0;
+            }
+
+            @Override
+            public int smell() {
+                return 0;
+            }
+
+            @Override
+            public int random(int n) {
+                return 0;
+            }
+
+            @Override
+            public void act(Cmd.CmdType type, int amount) {
+            }
+
+            @Override
+            public void fired(Rule rule, int index) {
+            }
+        };
+        // each rule that fires also acts; the second rule never fires and starts where the third does
+        assertEquals(0 << 1 | 1, translated.run(host, 0));
+        assertEquals(2 << 1 | 1, translated.run(host, 1));
+        assertEquals(2 << 1 | 1, translated.run(host, 2));
+        assertEquals(3 << 1 | 1, translated.run(host, 3));
+        assertEquals(CompiledProgram.NO_RULE, translated.run(host, 4));
+    }
+
+    private static ProgramImpl parse(String program) throws SyntaxError {
+        return (ProgramImpl) ParserFactory.getParser().parse(new StringReader(program));
+    }
+}
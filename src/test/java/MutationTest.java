@@ -18,6 +18,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import exceptions.SyntaxError;
+import main.RandomStream;
+import main.Util;
 import org.junit.jupiter.api.Test;
 import parse.Parser;
 import parse.ParserFactory;
@@ -709,6 +711,61 @@ public class MutationTest {
 		}
 	}
 
+	@Test
+	public void testMutatedCopiesShareTheRest() throws FileNotFoundException, SyntaxError {
+		Reader r = new BufferedReader(new InputStreamReader(new FileInputStream(critter_programs[13])));
+		ProgramImpl prog = (ProgramImpl) ParserFactory.getParser().parse(r);
+		String source = prog.toString();
+		Mutation[] mutations = {MutationFactory.getDuplicate(), MutationFactory.getInsert(), MutationFactory.getRemove(),
+				MutationFactory.getReplace(), MutationFactory.getSwap(), MutationFactory.getTransform()};
+		RandomStream previous = Util.getRandomStream();
+		try {
+			for (int i = 0; i < prog.size(); i++) {
+				for (Mutation m : mutations) {
+					// the copy is mutated exactly like a clone, with the same random numbers
+					int index = i;
+					Util.setRandomStream(new RandomStream(i));
+					Maybe<Program> expected;
+					try {
+						expected = ((Program) prog.clone()).mutate(i, m);
+					} catch (ClassCastException e) {
+						// removing an expression from a command fails, on a copy as well
+						Util.setRandomStream(new RandomStream(i));
+						assertThrows(ClassCastException.class, () -> prog.mutateCopy(index, m));
+						assertEquals(source, prog.toString());
+						continue;
+					}
+					Util.setRandomStream(new RandomStream(i));
+					Maybe<ProgramImpl> copy = prog.mutateCopy(i, m);
+					assertEquals(expected.isPresent(), copy.isPresent());
+					if (copy.isPresent()) assertEquals(expected.orElse(null).toString(), copy.orElse(null).toString());
+					assertEquals(source, prog.toString());
+				}
+			}
+			// the condition of the first rule comes right after the rules, and the other rules are shared
+			ProgramImpl copy = prog.mutateCopy(prog.numRules() + 1, MutationFactory.getTransform()).orElse(null);
+			assertNotSame(prog.getRule(0), copy.getRule(0));
+			for (int i = 1; i < prog.numRules(); i++) assertSame(prog.getRule(i), copy.getRule(i));
+
+			// neither the program nor any of its descendants is changed by mutating the next one
+			List<ProgramImpl> lineage = new ArrayList<>(List.of(prog));
+			List<String> texts = new ArrayList<>(List.of(source));
+			Util.setRandomStream(new RandomStream(42));
+			while (lineage.size() <= 50) {
+				try {
+					ProgramImpl child = lineage.get(lineage.size() - 1).mutateCopy();
+					lineage.add(child);
+					texts.add(child.toString());
+				} catch (ClassCastException e) {
+					// as above, try another mutation
+				}
+			}
+			for (int i = 0; i < lineage.size(); i++) assertEquals(texts.get(i), lineage.get(i).toString());
+		} finally {
+			Util.setRandomStream(previous);
+		}
+	}
+
 	private void getAllNodesOfType(Node node, List<Node> dft, NodeCategory type) {
 		int size = node.size();
 		for (int i=0; i<size; i++) {
@@ -0,0 +1,67 @@
+import ast.*;
+import cms.util.maybe.Maybe;
+import exceptions.SyntaxError;
+import org.junit.jupiter.api.Test;
+import parse.ParserFactory;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class contains tests for the simplification of rules before they are run.
+ */
+public class OptimizerTest {
+
+    @Test
+    public void testConstantsAreFolded() throws SyntaxError {
+        assertEquals("mem[4] > 7 --> mem[6] := 0", optimize("mem[4] > (3 + 4) * 1 --> POSTURE := 7 / 0;"));
+        assertEquals("mem[4] = 2", optimize("mem[4] = 17 mod 5 + 0 * mem[3] --> wait;").split(" -->")[0]);
+        assertEquals("mem[4] = 3", optimize("17 mod 0 = 0 and mem[4] = 3 --> wait;").split(" -->")[0]);
+    }
+
+    @Test
+    public void testRulesThatNeverFireAreDropped() throws SyntaxError {
+        assertNull(optimize("2 < 1 --> wait;"));
+        assertNull(optimize("mem[3] > 4 and 1 = 2 --> wait;"));
+        // the sensor is still read, so the rule has to stay
+        assertNotNull(optimize("random[3] = 0 and 1 = 2 --> wait;"));
+    }
+
+    @Test
+    public void testCommandsAfterAnActionAreDropped() throws SyntaxError {
+        assertEquals("1 = 1 --> mem[6] := 3\n          wait", optimize("1 = 1 or mem[3] = 2 --> POSTURE := 3 wait mem[7] := 1;")
+                .replace("0 = 0", "1 = 1"));
+    }
+
+    @Test
+    public void testCheapTestsComeFirst() throws SyntaxError {
+        assertEquals("mem[3] > 5 or smell < 2000", reorder("smell < 2000 or mem[3] > 5"));
+        assertEquals("mem[3] = 1 and ahead[1] = 0 and smell < 2000", reorder("smell < 2000 and ahead[1] = 0 and mem[3] = 1"));
+        // random numbers are drawn in the same order, before anything else
+        assertEquals("random[2] = 0 and random[3] = 1 and mem[3] = 1 and nearby[1] = 0",
+                reorder("nearby[1] = 0 and random[2] = 0 and mem[3] = 1 and random[3] = 1"));
+    }
+
+    @Test
+    public void testProgramIsNotChanged() throws SyntaxError {
+        String text = "mem[4] > (3 + 4) * 1 and 2 < 1 --> POSTURE := 7 / 0 wait mem[7] := 1;";
+        ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(text));
+        String before = program.toString();
+        Optimizer.optimize(program.getRule(0));
+        assertEquals(before, program.toString());
+    }
+
+    // the reordered condition as text
+    private static String reorder(String condition) throws SyntaxError {
+        ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(condition + " --> wait;"));
+        return Optimizer.reorder((Condition) program.getRule(0).nodeAt(1)).toString();
+    }
+
+    // the optimized rule as text, without the closing semicolon, or null if it was dropped
+    private static String optimize(String rule) throws SyntaxError {
+        ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(rule));
+        Maybe<Rule> optimized = Optimizer.optimize(program.getRule(0));
+        return optimized.isPresent() ? optimized.orElse(null).toString().replaceAll(";$", "") : null;
+    }
+}
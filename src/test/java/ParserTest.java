@@ -217,6 +217,69 @@ public class ParserTest {
             fail("testClone failed");
         }
     }
+    @Test
+    public void testNodeAtFollowsEdits() throws SyntaxError {
+        ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(
+                "mem[3] > 1 and nearby[2] = 0 --> mem[5] := 1 wait; 1 = 1 --> eat; ahead[1] < 2 --> mem[6] := 3 + 4;"));
+        assertNodesInOrder(program);
+        Rule rule = program.getRule(0);
+        assertNodesInOrder(rule);
+
+        program.removeRule(1);
+        assertNodesInOrder(program);
+        // mutations edit the children of a node directly
+        rule.getChildren().remove(rule.getChildren().size() - 1);
+        assertNodesInOrder(program);
+        rule.getChildren().set(0, new ConditionRelation(new ExprNum(2), ConditionRelation.RelOperator.LT, new ExprNum(3)));
+        assertNodesInOrder(program);
+        assertSame(rule, ((AbstractNode) rule.getChildren().get(0)).getParent().orElse(null));
+        rule.addCommand(new Cmd(Cmd.CmdType.GROW));
+        assertNodesInOrder(program);
+        assertNodesInOrder(rule);
+    }
+
+    // checks nodeAt and size of node against its tree walked breadth first
+    private static void assertNodesInOrder(Node node) {
+        List<Node> expected = new LinkedList<>();
+        Queue<Node> queue = new LinkedList<>(List.of(node));
+        while (!queue.isEmpty()) {
+            Node current = queue.remove();
+            expected.add(current);
+            queue.addAll(current.getChildren());
+        }
+        assertEquals(expected.size(), node.size());
+        for (int i = 0; i < expected.size(); i++) assertSame(expected.get(i), node.nodeAt(i));
+        assertThrows(IndexOutOfBoundsException.class, () -> node.nodeAt(expected.size()));
+    }
+
+    @Test
+    public void testStructure() throws SyntaxError {
+        for (String critter_program : critter_programs) {
+            try {
+                ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new FileReader(critter_program));
+                ProgramImpl again = (ProgramImpl) ParserFactory.getParser().parse(new FileReader(critter_program));
+                assertTrue(program.sameStructure(again));
+                assertTrue(program.sameStructure(program.clone()));
+                assertEquals(program.structuralHash(), again.structuralHash());
+            } catch (FileNotFoundException e) {
+                fail("missing " + critter_program);
+            }
+        }
+        Parser parser = ParserFactory.getParser();
+        ProgramImpl program = (ProgramImpl) parser.parse(new StringReader("mem[3] - 1 - 2 > -4 --> mem[5] := 1 wait;"));
+        for (String other : new String[]{"mem[3] - (1 - 2) > -4 --> mem[5] := 1 wait;", "mem[3] - 1 - 2 > 4 --> mem[5] := 1 wait;",
+                "mem[3] - 1 - 2 >= -4 --> mem[5] := 1 wait;", "mem[3] - 1 - 2 > -4 --> mem[5] := 1 eat;"})
+            assertFalse(program.sameStructure(parser.parse(new StringReader(other))), other);
+
+        // the kept hashes follow changes deep in the tree
+        int hash = program.structuralHash();
+        ConditionRelation relation = (ConditionRelation) program.getRule(0).nodeAt(1);
+        ((ExprBinary) relation.getLeft()).setOpr(ExprBinary.BinExprOperator.PLUS);
+        assertTrue(hash != program.structuralHash());
+        assertEquals(((ProgramImpl) program.clone()).structuralHash(), program.structuralHash());
+        assertTrue(program.sameStructure(parser.parse(new StringReader("mem[3] - 1 + 2 > -4 --> mem[5] := 1 wait;"))));
+    }
+
     @Test
     public void testMisc() throws FileNotFoundException {
         int width = 10;
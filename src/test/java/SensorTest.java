@@ -1,8 +1,13 @@
+import exceptions.SyntaxError;
 import model.Constants;
 import org.junit.jupiter.api.Test;
 import simulation.*;
 import simulation.loaders.WorldFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -75,6 +80,52 @@ public class SensorTest {
         currentWorld.print();
     }
 
+    @Test
+    public void smellFieldMatchesSearch() throws SyntaxError {
+        World world = new World("smell", 60, 60, new ArrayList<>(), new ArrayList<>());
+        world.setEnableManna(false);
+        Random random = new Random(42);
+
+        List<Critter> critters = new ArrayList<>();
+        for (int column = 1; column < world.getWidth() - 1; column++) {
+            for (int row = 2; row < world.getHeight() - 3; row++) {
+                if ((column + row) % 2 != 0) continue;
+                int roll = random.nextInt(100);
+                if (roll < 10) world.setHex(new Coordinate(column, row), new Hex(column, row, Hex.HexType.ROCK));
+                else if (roll < 11) world.setHex(new Coordinate(column, row), new Hex(column, row, Hex.HexType.FOOD, 50));
+                else if (roll < 15) {
+                    Critter critter = WorldTest.createCritter(world,
+                            "ahead[1] < -1 --> eat; random[3] = 0 --> left; 1 = 1 --> forward;", 5000);
+                    world.insertCritterAtLocation(critter, column, row);
+                    critters.add(critter);
+                }
+            }
+        }
+
+        int smelled = 0;
+        for (int round = 0; round < 30; round++) {
+            world.step(1);
+            for (int i = 0; i < 10; i++) {
+                int column = 1 + random.nextInt(world.getWidth() - 2);
+                int row = 2 + random.nextInt(world.getHeight() - 5);
+                if ((column + row) % 2 != 0) continue;
+                Hex hex = world.hexAt(column, row);
+                if (hex.getType() == Hex.HexType.EMPTY) hex.setFoodValue(20);
+                else if (hex.getType() == Hex.HexType.FOOD) hex.setFoodValue(0);
+
+                for (Critter critter : critters) {
+                    if (!critter.isAlive()) continue;
+                    world.setEnableSmellField(false);
+                    int expected = critter.smell(-1);
+                    world.setEnableSmellField(true);
+                    assertEquals(expected, critter.smell(-1), "smell of " + critter + " in round " + round);
+                    if (expected < 1_000_000) smelled++;
+                }
+            }
+        }
+        assertTrue(smelled > 0);
+    }
+
     private Critter createSampleCritter(World currentWorld) {
         return new Critter( currentWorld,
                 "test1", Constants.MIN_MEMORY, 2, 3,
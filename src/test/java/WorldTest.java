@@ -0,0 +1,477 @@
+import ast.ProgramImpl;
+import exceptions.SyntaxError;
+import model.Constants;
+import model.StepMode;
+import org.junit.jupiter.api.Test;
+import parse.ParserFactory;
+import simulation.Coordinate;
+import simulation.Critter;
+import simulation.Hex;
+import simulation.World;
+import simulation.loaders.WorldFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class contains tests for the world's bookkeeping of hexes and critters.
+ */
+public class WorldTest {
+
+    private static final Consumer<World> INTERPRETED = world -> world.setEnableCompiledPrograms(false);
+
+    @Test
+    public void testEveryCritterActsOncePerStep() throws SyntaxError {
+        World world = new World();
+        world.setEnableManna(false);
+
+        Critter[] critters = new Critter[4];
+        for (int i = 0; i < critters.length; i++) {
+            critters[i] = createCritter(world, "1 = 1 --> wait;", 250);
+            world.insertCritterAtLocation(critters[i], 4 + 2 * i, 4);
+        }
+        assertEquals(critters.length, world.getNumberOfAliveCritters());
+
+        world.step(5);
+        // waiting rests once for the action and once at the end of the turn
+        for (Critter critter : critters)
+            assertEquals(250 + 5 * 2 * Constants.SOLAR_FLUX, critter.getMemory()[Constants.MemoryConstants.ENERGY]);
+        assertEquals(5, world.getSteps());
+    }
+
+    @Test
+    public void testDeadCrittersLeaveTheWorld() throws SyntaxError {
+        World world = new World();
+        world.setEnableManna(false);
+
+        Critter survivor = createCritter(world, "1 = 1 --> wait;", 250);
+        Critter starving = createCritter(world, "1 = 1 --> forward;", 1);
+        world.insertCritterAtLocation(survivor, 4, 4);
+        world.insertCritterAtLocation(starving, 8, 4);
+
+        world.step(1);
+        assertFalse(starving.isAlive());
+        assertTrue(survivor.isAlive());
+        assertEquals(1, world.getNumberOfAliveCritters());
+        assertEquals(Hex.HexType.FOOD, world.hexAt(8, 4).getType());
+
+        world.step(3);
+        assertEquals(1, world.getNumberOfAliveCritters());
+        assertEquals(250 + 4 * 2 * Constants.SOLAR_FLUX, survivor.getMemory()[Constants.MemoryConstants.ENERGY]);
+    }
+
+    @Test
+    public void testCrittersMoveBetweenNeighboringHexes() throws SyntaxError {
+        World world = new World("moves", 10, 10, new ArrayList<>(), new ArrayList<>());
+        world.setEnableManna(false);
+
+        Critter critter = createCritter(world, "1 = 1 --> forward;", 250);
+        world.insertCritterAtLocation(critter, 4, 4);
+        critter.setDirection(Constants.DirectionConstants.TOP_RIGHT);
+
+        world.step(1);
+        assertEquals(5, critter.getColumn());
+        assertEquals(5, critter.getRow());
+        assertEquals(Hex.HexType.EMPTY, world.hexAt(4, 4).getType());
+        assertSame(critter, world.hexAt(5, 5).getCritter());
+
+        // the bottom rows of the world are rock, so the critter cannot leave it
+        critter.setDirection(Constants.DirectionConstants.BOTTOM_LEFT);
+        world.step(4);
+        assertEquals(2, critter.getColumn());
+        assertEquals(2, critter.getRow());
+        assertEquals(Constants.ROCK_VALUE, critter.ahead(1));
+    }
+
+    @Test
+    public void testMannaOnlyFallsOnOpenHexes() {
+        World world = new World("rocks", 100, 100, new ArrayList<>(), new ArrayList<>());
+        for (int column = 0; column < world.getWidth(); column++)
+            for (int row = 0; row < world.getHeight(); row++)
+                if ((column + row) % 2 == 0 && !(column == 4 && row == 4))
+                    world.setHex(new Coordinate(column, row), new Hex(column, row, Hex.HexType.ROCK));
+
+        // every batch has to fit on the one hex that is left
+        world.addFood();
+        assertEquals(Hex.HexType.FOOD, world.hexAt(4, 4).getType());
+        assertEquals((int) (Constants.MANNA_COUNT * world.getWidth() * world.getHeight() / 1_000.0) * Constants.MANNA_AMOUNT,
+                world.hexAt(4, 4).getFoodValue());
+
+        world.setHex(new Coordinate(4, 4), new Hex(4, 4, Hex.HexType.ROCK));
+        world.addFood();
+        assertEquals(Hex.HexType.ROCK, world.hexAt(4, 4).getType());
+    }
+
+    @Test
+    public void testInsertCrittersStopsWhenTheWorldIsFull() throws SyntaxError {
+        World world = new World("full", 10, 10, new ArrayList<>(), new ArrayList<>());
+        int emptyHexes = 0;
+        for (int column = 0; column < world.getWidth(); column++)
+            for (int row = 0; row < world.getHeight(); row++)
+                if (world.getTerrainInfo(column, row) == 0) emptyHexes++;
+
+        int[] created = {0};
+        int unplaced = world.insertCritters(() -> {
+            created[0]++;
+            try {
+                return createCritter(world, "1 = 1 --> wait;", 250);
+            } catch (SyntaxError e) {
+                throw new IllegalStateException(e);
+            }
+        }, emptyHexes + 10);
+        assertEquals(10, unplaced);
+        assertEquals(emptyHexes, created[0]);
+        assertEquals(emptyHexes, world.getNumberOfAliveCritters());
+        assertFalse(world.insertCritter(createCritter(world, "1 = 1 --> wait;", 250)));
+    }
+
+    @Test
+    public void testSeedDeterminesRun() throws SyntaxError {
+        assertEquals(runSeededWorld(1234), runSeededWorld(1234));
+    }
+
+    @Test
+    public void testParallelStepIsDeterministic() throws SyntaxError {
+        for (StepMode mode : new StepMode[]{StepMode.TILED, StepMode.INTENTS}) {
+            String oneThread = runParallelWorld(1234, mode, 1);
+            assertEquals(oneThread, runParallelWorld(1234, mode, 4));
+            assertEquals(oneThread, runParallelWorld(1234, mode, 4));
+        }
+    }
+
+    @Test
+    public void testShutDownWorldStepsSerially() throws SyntaxError, InterruptedException {
+        for (StepMode mode : new StepMode[]{StepMode.TILED, StepMode.INTENTS}) {
+            World world = new World(7);
+            world.setStepMode(mode, 2);
+            world.setEnableTieredExecution(true);
+            world.step(2);
+            world.shutdown();
+            assertEquals(StepMode.SERIAL, world.getStepMode());
+            assertEquals(0, world.getParallelism());
+            world.getTieredExecution().awaitCompiles();
+            world.step(2);
+        }
+    }
+
+    @Test
+    public void testIntentsConflictOnlyWhenCommitted() throws SyntaxError {
+        World world = new World("intents", 10, 10, new ArrayList<>(), new ArrayList<>());
+        world.setEnableManna(false);
+        world.setStepMode(StepMode.INTENTS, 2);
+
+        // both critters move into (3, 3); the older one gets there first
+        Critter first = createCritter(world, "1 = 1 --> forward;", 250);
+        Critter second = createCritter(world, "1 = 1 --> forward;", 250);
+        world.insertCritterAtLocation(first, 2, 2);
+        world.insertCritterAtLocation(second, 4, 2);
+        first.setDirection(Constants.DirectionConstants.TOP_RIGHT);
+        second.setDirection(Constants.DirectionConstants.TOP_LEFT);
+        // the eater decides to eat, but is killed by the attack, which is carried out first
+        Critter eater = createCritter(world, "ahead[1] < -1 --> eat; 1 = 1 --> wait;", 10);
+        Critter attacker = createCritter(world, "1 = 1 --> attack;", 250);
+        world.insertCritterAtLocation(eater, 6, 6);
+        world.insertCritterAtLocation(attacker, 6, 8);
+        eater.setDirection(Constants.DirectionConstants.BOTTOM_RIGHT);
+        attacker.setDirection(Constants.DirectionConstants.BOTTOM);
+        world.setHex(new Coordinate(7, 5), new Hex(7, 5, Hex.HexType.FOOD, 100));
+
+        world.step(1);
+        assertSame(first, world.hexAt(3, 3).getCritter());
+        assertEquals(4, second.getColumn());
+        assertEquals(2, second.getRow());
+        assertEquals(100, world.hexAt(7, 5).getFoodValue());
+        assertFalse(eater.isAlive());
+    }
+
+    @Test
+    public void testCompiledProgramsMatchInterpreter() throws SyntaxError {
+        assertEquals(runProgramWorld(1234, INTERPRETED), runProgramWorld(1234, world -> { }));
+        assertEquals(runProgramWorld(99, INTERPRETED), runProgramWorld(99, world -> { }));
+    }
+
+    @Test
+    public void testTranslatedProgramsMatchInterpreter() throws SyntaxError {
+        assertEquals(runProgramWorld(1234, INTERPRETED), runProgramWorld(1234, world -> world.setEnableJit(true)));
+        assertEquals(runProgramWorld(99, INTERPRETED), runProgramWorld(99, world -> world.setEnableJit(true)));
+    }
+
+    @Test
+    public void testReorderedConditionsMatchInterpreter() throws SyntaxError {
+        Consumer<World> reordered = world -> world.setEnableConditionReordering(true);
+        assertEquals(runProgramWorld(1234, INTERPRETED), runProgramWorld(1234, reordered));
+        assertEquals(runProgramWorld(99, INTERPRETED), runProgramWorld(99, reordered.andThen(world -> world.setEnableJit(true))));
+    }
+
+    @Test
+    public void testTieredProgramsMatchInterpreter() throws SyntaxError {
+        Consumer<World> tiered = world -> {
+            world.setEnableTieredExecution(true);
+            world.getTieredExecution().setPromotionThreshold(100);
+        };
+        assertEquals(runProgramWorld(1234, INTERPRETED), runProgramWorld(1234, tiered));
+        assertEquals(runProgramWorld(99, INTERPRETED), runProgramWorld(99, tiered.andThen(world -> world.setEnableJit(true))));
+    }
+
+    @Test
+    public void testHotGenomesAreCompiled() throws SyntaxError, InterruptedException {
+        World world = new World("tiers", 10, 10, new ArrayList<>(), new ArrayList<>());
+        world.setEnableManna(false);
+        world.setEnableTieredExecution(true);
+        world.getTieredExecution().setPromotionThreshold(10);
+        Critter hot = createCritter(world, "1 = 1 --> wait;", 250);
+        Critter other = createCritter(world, "1 = 1 --> wait;", 250);
+        Critter cold = createCritter(world, "2 = 2 --> wait;", 250);
+        world.insertCritterAtLocation(hot, 2, 2);
+        world.insertCritterAtLocation(other, 6, 6);
+        world.insertCritterAtLocation(cold, 4, 4);
+        // the first genome is run twice a step, the second once
+        world.step(6);
+        world.getTieredExecution().awaitCompiles();
+        assertEquals(1, world.getTieredExecution().getPromotions());
+        assertEquals(0, world.getTieredExecution().getCompileQueueLength());
+        assertTrue(world.getTieredExecution().getAverageCompileLatency() > 0);
+        world.step(4);
+        world.getTieredExecution().awaitCompiles();
+        assertEquals(2, world.getTieredExecution().getPromotions());
+        assertEquals(250 + 10 * 2 * Constants.SOLAR_FLUX, cold.getMemory()[Constants.MemoryConstants.ENERGY]);
+    }
+
+    @Test
+    public void testBatchedProgramsMatchCritterByCritter() throws SyntaxError {
+        Consumer<World> intents = world -> world.setStepMode(StepMode.INTENTS, 1);
+        Consumer<World> batched = intents.andThen(world -> world.setEnableBatchEvaluation(true));
+        assertEquals(runProgramWorld(1234, intents), runProgramWorld(1234, batched));
+        assertEquals(runProgramWorld(99, intents.andThen(INTERPRETED)), runProgramWorld(99, batched.andThen(INTERPRETED)));
+
+        assertEquals(runProgramWorld(1234, intents.andThen(world -> world.setEnableJit(true))),
+                runProgramWorld(1234, batched.andThen(world -> world.setEnableJit(true))));
+    }
+
+    @Test
+    public void testSensorCacheDoesNotChangeRun() throws SyntaxError {
+        Consumer<World> uncached = world -> world.setEnableSensorCache(false);
+        assertEquals(runProgramWorld(1234, uncached), runProgramWorld(1234, world -> { }));
+        assertEquals(runProgramWorld(99, uncached.andThen(INTERPRETED)), runProgramWorld(99, INTERPRETED));
+    }
+
+    @Test
+    public void testSensorCacheSeesThePostureChange() throws SyntaxError {
+        for (Consumer<World> setup : List.<Consumer<World>>of(INTERPRETED, world -> { })) {
+            World world = new World("posture", 10, 10, new ArrayList<>(), new ArrayList<>());
+            world.setEnableManna(false);
+            setup.accept(world);
+            // ahead[0] is the critter itself, whose posture the first pass changes
+            Critter critter = createCritter(world, "ahead[0] / 10 mod 100 = 5 --> wait; 1 = 1 --> POSTURE := 5;", 250);
+            world.insertCritterAtLocation(critter, 2, 2);
+            world.step(1);
+            assertEquals(2, critter.getMemory()[Constants.MemoryConstants.PASS]);
+            assertEquals(0, critter.getLastRuleLine());
+        }
+    }
+
+    @Test
+    public void testPassesThatChangeNothingAreSkipped() throws SyntaxError {
+        for (Consumer<World> setup : List.<Consumer<World>>of(INTERPRETED, world -> { })) {
+            World world = new World("passes", 10, 10, new ArrayList<>(), new ArrayList<>());
+            world.setEnableManna(false);
+            setup.accept(world);
+            // the first pass changes the posture, the second changes nothing
+            Critter still = createCritter(world, "POSTURE > 4 and 2 < 1 --> wait; 1 = 1 --> POSTURE := 5;", 250);
+            // reading the pass number makes every pass different
+            Critter counting = createCritter(world, "PASS < 0 --> wait; 1 = 1 --> POSTURE := 5;", 250);
+            world.insertCritterAtLocation(still, 2, 2);
+            world.insertCritterAtLocation(counting, 6, 6);
+            world.step(1);
+            assertEquals(Constants.MAX_RULES_PER_TURN - 2, world.getSkippedPasses());
+            for (Critter critter : List.of(still, counting)) {
+                assertEquals(Constants.MAX_RULES_PER_TURN, critter.getMemory()[Constants.MemoryConstants.PASS]);
+                assertEquals(5, critter.getPosture());
+                assertEquals(1, critter.getLastRuleLine());
+            }
+        }
+    }
+
+    @Test
+    public void testCritterOutOfFuelWaits() throws SyntaxError {
+        // the first critter's passes are skipped after the first, the second's all run
+        List<String> programs = List.of("POSTURE > 4 and 2 < 1 --> wait; 1 = 1 --> POSTURE := 5;",
+                "PASS < 0 --> wait; 1 = 1 --> POSTURE := 5;");
+        // the energy of a critter that waits, as the ones out of fuel do
+        World waiting = new World("wait", 10, 10, new ArrayList<>(), new ArrayList<>());
+        waiting.setEnableManna(false);
+        Critter waiter = createCritter(waiting, "1 = 1 --> wait;", 250);
+        waiting.insertCritterAtLocation(waiter, 2, 2);
+        waiting.step(1);
+        int waited = waiter.getMemory()[Constants.MemoryConstants.ENERGY];
+        // a budget of 100 a turn, or of 200 a step shared by two critters, is the same
+        for (long[] budgets : new long[][]{{100, 0}, {0, 200}, {150, 200}}) {
+            for (Consumer<World> setup : List.<Consumer<World>>of(INTERPRETED, world -> { })) {
+                World world = new World("fuel", 10, 10, new ArrayList<>(), new ArrayList<>());
+                world.setEnableManna(false);
+                world.setFuelBudgets(budgets[0], budgets[1]);
+                setup.accept(world);
+                List<Critter> critters = new ArrayList<>();
+                for (String program : programs) {
+                    Critter critter = createCritter(world, program, 250);
+                    world.insertCritterAtLocation(critter, 2 + 4 * critters.size(), 2 + 4 * critters.size());
+                    critters.add(critter);
+                }
+                world.step(1);
+                for (int i = 0; i < critters.size(); i++) {
+                    Critter critter = critters.get(i);
+                    // every pass tries both rules, until one of them does not fit in the 100 fuel left
+                    ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(programs.get(i)));
+                    long first = program.getRule(0).size(), cost = first + program.getRule(1).size();
+                    long passes = 100 / cost, fuel = passes * cost + (100 - passes * cost >= first ? first : 0);
+                    assertEquals(passes + 1, critter.getMemory()[Constants.MemoryConstants.PASS]);
+                    assertEquals(5, critter.getPosture());
+                    assertEquals(fuel, critter.getLastTurnFuel());
+                    assertEquals(fuel, critter.getTotalFuel());
+                    assertEquals(1, critter.getStarvedTurns());
+                    assertEquals(waited, critter.getMemory()[Constants.MemoryConstants.ENERGY]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRulesTheFuelCannotPayForDoNotStart() throws SyntaxError {
+        String sensing = "ahead[40] < 5 --> POSTURE := 3;";
+        String large = "mem[3]" + " + mem[3]".repeat(40) + " = 0 --> POSTURE := 7;";
+        long sensingRule = ((ProgramImpl) ParserFactory.getParser().parse(new StringReader(sensing))).getRule(0).size();
+        for (Consumer<World> setup : List.<Consumer<World>>of(INTERPRETED, world -> { }, world -> world.setEnableJit(true))) {
+            World world = new World("fuel", 10, 10, new ArrayList<>(), new ArrayList<>());
+            world.setEnableManna(false);
+            world.setFuelBudgets(50, 0);
+            setup.accept(world);
+            Critter senses = createCritter(world, sensing, 250);
+            Critter tooLarge = createCritter(world, large, 250);
+            world.insertCritterAtLocation(senses, 2, 2);
+            world.insertCritterAtLocation(tooLarge, 6, 6);
+            int posture = tooLarge.getPosture();
+            world.step(1);
+            // looking 40 hexes ahead burns 40, after which the rule cannot start again
+            assertEquals(3, senses.getPosture());
+            assertEquals(sensingRule + 40, senses.getLastTurnFuel());
+            assertEquals(2, senses.getMemory()[Constants.MemoryConstants.PASS]);
+            assertEquals(1, senses.getStarvedTurns());
+            // a rule larger than the whole budget never starts
+            assertEquals(posture, tooLarge.getPosture());
+            assertEquals(0, tooLarge.getLastTurnFuel());
+            assertEquals(1, tooLarge.getStarvedTurns());
+        }
+    }
+
+    @Test
+    public void testCrittersWithTheSameGenomeShareIt() throws SyntaxError {
+        World world = new World("genomes", 10, 10, new ArrayList<>(), new ArrayList<>());
+        world.setEnableManna(false);
+        Critter first = createCritter(world, "ahead[1] > 0 --> attack; 1 = 1 --> wait;", 250);
+        Critter second = createCritter(world, "ahead[1] > 0 --> attack; 1 = 1 --> wait;", 250);
+        Critter other = createCritter(world, "ahead[1] > 0 --> attack; 1 = 1 --> eat;", 250);
+        world.insertCritterAtLocation(first, 2, 2);
+        world.insertCritterAtLocation(second, 6, 6);
+        world.insertCritterAtLocation(other, 4, 4);
+        assertEquals(2, world.getDistinctGenomes());
+        assertEquals(first.getProgramString(), second.getProgramString());
+
+        // a copy of a critter's own program finds its genome again
+        Critter copy = new Critter(world, "test", Constants.MIN_MEMORY, 1, 1, 1, 250, 0, first.getProgram());
+        world.insertCritterAtLocation(copy, 8, 2);
+        assertEquals(2, world.getDistinctGenomes());
+        world.step(3);
+        assertEquals(first.getMemory()[Constants.MemoryConstants.ENERGY], copy.getMemory()[Constants.MemoryConstants.ENERGY]);
+    }
+
+    @Test
+    public void testCrittersFromAWorldFileShareTheirGenome() {
+        // two critters of one species, and one of another
+        World world = WorldFactory.fromFile("files/world_genomes_test.txt");
+        assertEquals(3, world.getNumberOfAliveCritters());
+        assertEquals(2, world.getDistinctGenomes());
+    }
+
+    @Test
+    public void testMemoryOutsideTheCritterReadsZero() throws SyntaxError {
+        for (boolean compiled : new boolean[]{false, true}) {
+            World world = new World("memory", 10, 10, new ArrayList<>(), new ArrayList<>());
+            world.setEnableManna(false);
+            world.setEnableCompiledPrograms(compiled);
+            // memory has MIN_MEMORY = 7 entries, so mem[7] is just past its end
+            Critter critter = createCritter(world,
+                    "mem[7] = 0 and mem[0 - 1] = 0 --> mem[7] := 5 mem[100] := 5 POSTURE := 3 wait;", 250);
+            world.insertCritterAtLocation(critter, 2, 2);
+            world.step(1);
+            assertEquals(3, critter.getPosture());
+            assertEquals(Constants.MIN_MEMORY, critter.getMemory().length);
+        }
+    }
+
+    // state of a random world with seed after some random critter behavior
+    private static String runSeededWorld(long seed) throws SyntaxError {
+        World world = new World(seed);
+        for (int i = 0; i < 10; i++)
+            world.insertCritter(createCritter(world,
+                    "random[4] = 0 --> left; random[20] = 0 --> bud; ahead[1] < -1 --> eat; 1 = 1 --> forward;", 2000));
+        world.step(50);
+        return describe(world);
+    }
+
+    // like runSeededWorld, stepped in mode on threads, with critters that reach into other tiles
+    private static String runParallelWorld(long seed, StepMode mode, int threads) throws SyntaxError {
+        World world = new World(seed);
+        world.setStepMode(mode, threads);
+        for (int i = 0; i < 10; i++)
+            world.insertCritter(createCritter(world,
+                    "random[4] = 0 --> left; random[20] = 0 --> bud; ahead[1] < -1 --> eat; 1 = 1 --> forward;", 2000));
+        for (int i = 0; i < 30; i++)
+            world.insertCritter(createCritter(world,
+                    "ahead[1] > 0 --> mate; ahead[1] > 0 --> attack; ahead[1] < -1 --> eat; ahead[15] < -1 --> forward;"
+                            + " smell / 1000 > 0 and smell mod 1000 = 0 --> forward; random[3] = 0 --> right; 1 = 1 --> forward;", 2000));
+        world.step(50);
+        world.setStepMode(StepMode.SERIAL, 0);
+        return describe(world);
+    }
+
+    // like runSeededWorld, set up by setup, with critters whose programs use most of the
+    // language and mutate as they bud
+    private static String runProgramWorld(long seed, Consumer<World> setup) throws SyntaxError {
+        World world = new World(seed);
+        setup.accept(world);
+        ProgramImpl program = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(
+                "mem[7] = 0 --> mem[7] := random[5] + 1 mem[8] := mem[mem[7] - 8] / (mem[7] - 3);"
+                        + " POSTURE > 90 or mem[random[10]] mod (mem[7] - 2) < 0 --> POSTURE := POSTURE - 200 mem[7] := 0;"
+                        + " nearby[mem[7]] > 0 and ahead[mem[7] - 3] != 0 --> serve[-(ENERGY / 7)];"
+                        + " ahead[1] < -1 --> eat; ahead[1] > 0 --> attack; random[4] = 0 --> bud;"
+                        + " smell mod 1000 = 0 and smell / 1000 > 0 --> POSTURE := POSTURE + 7 forward;"
+                        + " { PASS < 3 or mem[9] > 4 } and random[2] = 0 --> mem[9] := mem[9] + 1;"
+                        + " 2 < 1 or random[2] = 5 --> grow; 1 > 2 --> bud;"
+                        + " (3 + 4) * 1 = 7 and mem[8] * 0 = 0 and ahead[0 / 0] >= 0 --> mem[9] := mem[9] / 1 + 0;"
+                        + " random[3] = 0 --> left; 1 = 1 --> mem[7] := 0 forward; 1 = 1 --> bud;"));
+        for (int i = 0; i < 20; i++)
+            world.insertCritter(new Critter(world, "test", 10, 1, 1, 1, 3000, 0, (ProgramImpl) program.clone()));
+        world.step(60);
+        return describe(world);
+    }
+
+    private static String describe(World world) {
+        StringBuilder state = new StringBuilder(world.toString());
+        state.append(world.getNumberOfAliveCritters());
+        for (int column = 0; column < world.getWidth(); column++)
+            for (int row = 0; row < world.getHeight(); row++)
+                world.getReadOnlyCritter(column, row).thenDo(critter ->
+                        state.append(Arrays.toString(critter.getMemory())).append(critter.getProgramString()));
+        return state.toString();
+    }
+
+    static Critter createCritter(World world, String program, int energy) throws SyntaxError {
+        ProgramImpl p = (ProgramImpl) ParserFactory.getParser().parse(new StringReader(program));
+        return new Critter(world, "test", Constants.MIN_MEMORY, 1, 1, 1, energy, 0, p);
+    }
+}